@@ -1,7 +1,7 @@
 package edu.mtu.compound;
 
+import edu.mtu.reaction.PathwayTable;
 import edu.mtu.reaction.Reaction;
-import edu.mtu.reaction.BasicReaction;
 
 /**
  * This class represents a disproportionating chemical entity and is used to support
@@ -9,7 +9,9 @@ import edu.mtu.reaction.BasicReaction;
  */
 public class DisproportionatingMolecule extends Molecule {
 
-	private BasicReaction[] reactions;
+	// The pathways are shared, the bitset notes the ones that are consumed
+	private PathwayTable pathways;
+	private long consumed;
 	
 	/**
 	 * Constructor.
@@ -17,39 +19,51 @@ public class DisproportionatingMolecule extends Molecule {
 	public DisproportionatingMolecule(String formula) {
 		// NOTE We are assuming that disproportion is always independent of photolysis		
 		super(formula);
+		
+		// Disproportionation takes place on the first visit, so always visit
+		setInterval(1, 0);
 	}
 
 	/**
-	 * Create a new disproportionating species from the species and reactions provided. 
+	 * Create a new disproportionating species from the pathways provided.
+	 * 
+	 * @param pathways of the reactants.
+	 * @param consumed bitset of the pathways that cannot take place.
 	 */
-	public static DisproportionatingMolecule create(Molecule species, BasicReaction[] reactions) {
-		DisproportionatingMolecule entity = new DisproportionatingMolecule(species.getFormula());
-		entity.reactions = reactions.clone();
+	public static DisproportionatingMolecule create(PathwayTable pathways, long consumed) {
+		DisproportionatingMolecule entity = MoleculePool.getInstance().acquireDisproportionating(pathways.getSpecies());
+		entity.pathways = pathways;
+		entity.consumed = consumed;
 		return entity;
 	}
 	
 	/**
-	 * Create a new disproportionating species from the species and reactions provided.
+	 * Note that the pathways in the bitset have been consumed.
 	 */
-	public static DisproportionatingMolecule create(Molecule one, Molecule two, BasicReaction[] reactions) { 
-		if (two == null) {
-			return create(one, reactions);
+	public void consume(long pathways) {
+		consumed |= pathways;
+	}
+	
+	@Override
+	void reset() {
+		super.reset();
+		setInterval(1, 0);
+	}
+	
+	@Override
+	public void doPhase(int phase, int step) {
+		// Disproportionation does not depend upon the location, so there is nothing to move
+		if (phase != MovePhase) {
+			doAction(step);
 		}
-		
-		DisproportionatingMolecule entity = new DisproportionatingMolecule(one.getFormula() + " + " + two.getFormula());
-		entity.reactions = reactions.clone();
-		return entity;		
 	}
 	
 	@Override
 	public void doAction(int step) {
 		// Check for any valid reactions
-		int size = reactions.length;
-		for (int ndx = 0; ndx < size; ndx++) {
-			if (reactions[ndx] != null) {
-				Reaction.getInstance().react(this);
-				return;
-			}
+		if (!pathways.isConsumed(consumed)) {
+			Reaction.getInstance().react(this);
+			return;
 		}
 		
 		// If we are here, all of the reactions are gone
@@ -57,9 +71,16 @@ public class DisproportionatingMolecule extends Molecule {
 	}
 			
 	/**
-	 * Get the reactions for this entity.
+	 * Get the bitset of the pathways that have been consumed.
+	 */
+	public long getConsumed() {
+		return consumed;
+	}
+	
+	/**
+	 * Get the pathways for this entity.
 	 */
-	public BasicReaction[] getReactions() {
-		return reactions;
+	public PathwayTable getPathways() {
+		return pathways;
 	}
 }
@@ -1,35 +1,59 @@
 package edu.mtu.compound;
 
-import org.apache.commons.math3.geometry.euclidean.threed.SphericalCoordinates;
-import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import edu.mtu.primitives.Entity;
 import edu.mtu.primitives.Sparse3DLattice;
 import edu.mtu.reaction.MoleculeDescription;
 import edu.mtu.reaction.Reaction;
-import edu.mtu.reaction.ReactionRegistry;
 import edu.mtu.reactor.Reactor;
 import edu.mtu.simulation.ChemSim;
 import edu.mtu.simulation.SimulationProperties;
 import edu.mtu.simulation.schedule.Steppable;
-import edu.mtu.util.FnvHash;
 import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
 
+/**
+ * A molecule in the reactor. There are many molecules of few species, so the 
+ * molecule only holds the ordinal of its species and the state that is its own, 
+ * the formula, description, etc. are shared through the species (flyweight).
+ */
 public class Molecule extends Steppable implements Entity {
+	
+	// Speed of the molecules, m/s
+	public final static double SpeedMean = 5.9e-7;
+	public final static double SpeedStdDev = 1e-8;
+	
+	// Number of standard deviations the speed is assumed to stay within
+	private final static int SpeedSigmas = 6;
+	
+	// Location used by each thread when moving a molecule, so moves do not allocate
+	private final static ThreadLocal<int[]> scratch = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[3];
+		}
+	};
+	
+	// Phases of the time step when they are run separately, all of the molecules move 
+	// before any of them react
+	public final static int MovePhase = 0;
+	public final static int ReactPhase = 1;
 
-	private MoleculeDescription md;
+	// Ordinal of the species of the molecule
+	private final short species;
 	
-	// Pointer to the reactor we are working in
-	protected Sparse3DLattice grid;
+	// Time step the molecule was last claimed on, either to act or to react with
+	private volatile int step = -1;
+	private final static AtomicIntegerFieldUpdater<Molecule> stepUpdater = AtomicIntegerFieldUpdater.newUpdater(Molecule.class, "step");
 	
-	// Dimensions of the grid
-	private int dx, dy, dz;
+	// Time step the molecule decays on if it has unimolecular reactions
+	private int decayStep = Integer.MAX_VALUE;
 	
-	// Used to identify the molecule and find reactions
-	private Integer formulaHash;
-	private String formula;
+	// Time step the molecule has been idle since, i.e., parked or waiting to decay, or -1 if it is not idle
+	private int idle = -1;
 	
-	private int step;
+	// Id of the molecule in the lattice, see Entity
+	private int agentId = -1;
 	
 	/**
 	 * Constructor.
@@ -42,27 +66,98 @@ public class Molecule extends Steppable implements Entity {
 	 * Constructor, note if pointers should be cached or not.
 	 */
 	public Molecule(String formula, boolean cache) {
-		this.formula = formula;
-		formulaHash = FnvHash.fnv1a32(formula);
-		
+		species = Species.get(formula).getOrdinal();
 		if (cache) {
-			md = ReactionRegistry.getInstance().getMoleculeDescription(formula);
-			dx = Reactor.getInstance().dimensions[0];
-			dy = Reactor.getInstance().dimensions[1];
-			dz = Reactor.getInstance().dimensions[2];
-			grid = Reactor.getInstance().grid;
+			initialize();
+		}
+	}
+	
+	/**
+	 * Prepare the state of the molecule for when it is created.
+	 */
+	private void initialize() {
+		MoleculeDescription md = md();
+		
+		// Spread the molecules of slower species over the time steps of their interval,
+		// molecules that only decay are run on the time step they decay instead
+		if (md != null && md.interval > 1 && !isDecayOnly()) {
+			setInterval(md.interval, ChemSim.getInstance().getRandom().nextInt(md.interval));
+		}
+		
+		// Decay is a first-order event, so draw an exponentially distributed lifetime
+		if (md != null && md.hasUnimolecular) {
+			int created = ChemSim.getSchedule().getTimeStep();
+			double lifetime = -Math.log(1 - ChemSim.getInstance().getRandom().nextDouble()) / md.decayRate;
+			double steps = Math.max(1, Math.ceil(lifetime / SimulationProperties.getInstance().getDeltaT()));
+			decayStep = (int)Math.min(Integer.MAX_VALUE, created + steps);
+			if (isDecayOnly()) {
+				idle = created;
+			}
 		}
 	}
+	
+	/**
+	 * Return a molecule that was disposed of to the state of a new one so that it
+	 * can be reused, see MoleculePool. The molecule is not in the lattice or the
+	 * schedule, so it needs to be inserted into both.
+	 */
+	void reset() {
+		step = -1;
+		decayStep = Integer.MAX_VALUE;
+		idle = -1;
+		setInterval(1, 0);
+		initialize();
+	}
 			
 	@Override
 	public void doAction(int step) {
-		this.step = step;
+		// Return if another molecule has claimed us to react with
+		if (!claim(step) || !prepare(step)) {
+			return;
+		}
 		if (react()) {
 			dispose();
 		} else {
 			move();
 		}
 	}
+	
+	@Override
+	public void doPhase(int phase, int step) {
+		switch (phase) {
+		case MovePhase:
+			if (prepare(step)) {
+				move();
+			}
+			break;
+		case ReactPhase:
+			if (claim(step) && react()) {
+				dispose();
+			}
+			break;
+		default:
+			doAction(step);
+		}
+	}
+	
+	/**
+	 * Prepare the molecule for the time step, returns false if it was parked.
+	 */
+	private boolean prepare(int step) {
+		// Nothing can happen to the molecule if none of the species it reacts with are present
+		if (SimulationProperties.getInstance().getLazyDiffusion() && isInert() && park(step)) {
+			return false;
+		}
+		
+		// Molecules that only decay are held until they do, so catch up on the walk first
+		if (idle != -1) {
+			if (step - idle > 1) {
+				move(step - idle - 1);
+			}
+			idle = -1;
+		}
+		return true;
+	}
 		
 	/**
 	 * Dispose of this molecule.
@@ -77,79 +172,236 @@ public class Molecule extends Steppable implements Entity {
 	 * @param update True if the count should be decremented, false otherwise.
 	 */
 	private void dispose(boolean update) {
+		idle = -1;
 		if (update) {
-			ChemSim.getTracker().update(formula, -1);
+			ChemSim.getTracker().update(getFormula(), -1);
 		}
 		Reactor.getInstance().remove(this);
 		ChemSim.getSchedule().remove(this);
+		MoleculePool.getInstance().release(this);
 	}
 	
 	/**
 	 * Get the formula of this molecule.
 	 */
 	public String getFormula() {
-		return formula;
+		return Species.get(species).getFormula();
+	}
+	
+	/**
+	 * Get the species of this molecule.
+	 */
+	public Species getSpecies() {
+		return Species.get(species);
 	}
 	
 	public int[] getInteractionRadii() {
-		return md.interactionRadius;
+		return md().interactionRadius;
+	}
+	
+	public int[] getSearchRadii() {
+		return md().searchRadius;
 	}
 	
 	public Integer[] getReactantHashes() {
-		return md.reactsWithHash;
+		return md().reactsWithHash;
 	}
 	
 	public boolean hasBimoleculear() {
-		return md.hasBimolecular;
+		return md().hasBimolecular;
 	}
 	
 	public boolean hasPhotolysis() {
-		return md.hasPhotolysis;
+		return md().hasPhotolysis;
 	}
 	
 	public boolean hasUnimolecular() {
-		return md.hasUnimolecular;
+		return md().hasUnimolecular;
 	}
 	
 	public boolean hasDissolvedReactants() {
-		return md.hasDissolvedReactants;
+		return md().hasDissolvedReactants;
 	}
 	
 	public boolean isBSide() {
-		return md.isBSide;
+		return md().isBSide;
+	}
+	
+	/**
+	 * Get the description shared by the molecules of the species.
+	 */
+	private MoleculeDescription md() {
+		return Species.get(species).getDescription();
+	}
+	
+	/**
+	 * Check to see if the molecule is inert, i.e., it only reacts bimolecularly and none 
+	 * of the species it reacts with are in the reactor.
+	 */
+	public boolean isInert() {
+		MoleculeDescription md = md();
+		if (md == null || !md.hasBimolecular || md.hasPhotolysis || md.hasUnimolecular) {
+			return false;
+		}
+		
+		// Dissolved molecules are always present, but only matter to the a-side
+		if (md.hasDissolvedReactants && !md.isBSide) {
+			return false;
+		}
+		Sparse3DLattice grid = Reactor.getInstance().grid;
+		for (int hash : md.reactsWithHash) {
+			if (grid.getTagCount(hash) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Park the molecule, it is not visited again until a species it reacts with is added.
+	 * Returns false if one was added before the molecule could be parked.
+	 */
+	private boolean park(int step) {
+		idle = step;
+		if (!Reactor.getInstance().park(this)) {
+			idle = -1;
+			return false;
+		}
+		ChemSim.getSchedule().remove(this);
+		return true;
+	}
+	
+	/**
+	 * Return the molecule to the schedule, it is moved to where the random walk of the 
+	 * time steps it was parked for would have taken it. Since that may be anywhere in
+	 * the reactor this must be called between the time steps, see Reactor.unparkWoken.
+	 */
+	public void unpark() {
+		// Ignore molecules disposed of while parked
+		if (idle == -1) {
+			return;
+		}
+		
+		// The sum of the steps is normally distributed along each axis
+		int steps = ChemSim.getSchedule().getTimeStep() - idle;
+		idle = -1;
+		if (steps > 0) {
+			XoRoShiRo128PlusRandom random = (XoRoShiRo128PlusRandom)ChemSim.getInstance().getRandom();
+			double sigma = SpeedMean * 1e9 * SimulationProperties.getInstance().getDeltaT() * Math.sqrt(steps / 3.0);
+			Sparse3DLattice grid = Reactor.getInstance().grid;
+			int[] location = grid.getObjectLocation(this);
+			int[] bounds = Reactor.getInstance().dimensions;
+			for (int ndx = 0; ndx < location.length; ndx++) {
+				location[ndx] += (int)Math.round(random.nextGaussian() * sigma);
+				location[ndx] = Math.max(0, Math.min(bounds[ndx], location[ndx]));
+			}
+			grid.setObjectLocation(this, location);
+		}
+		ChemSim.getSchedule().reinsert(this);
+	}
+	
+	/**
+	 * Check to see if the molecule only decays, i.e., nothing happens to it until it does.
+	 */
+	public boolean isDecayOnly() {
+		MoleculeDescription md = md();
+		return md != null && md.hasUnimolecular && !md.hasBimolecular && !md.hasPhotolysis;
+	}
+	
+	/**
+	 * Get the time step the molecule decays on.
+	 */
+	public int getDecayStep() {
+		return decayStep;
+	}
+	
+	/**
+	 * Check to see if the lifetime of the molecule is up as of the given time step.
+	 */
+	public boolean hasDecayed(int step) {
+		return step >= decayStep;
 	}
 	
 	public boolean isFree(int step) {
 		return (this.step != step);
 	}
+	
+	/**
+	 * Claim the molecule for the given time step, once claimed the molecule cannot
+	 * be claimed again so it either acts or is reacted with once per time step.
+	 * 
+	 * @return True if the claim was made, false if it had already been claimed.
+	 */
+	public boolean claim(int step) {
+		int previous = this.step;
+		return (previous != step) && stepUpdater.compareAndSet(this, previous, step);
+	}
+	
+	/**
+	 * Get the distance, in nm, that a molecule can be expected to move in a 
+	 * single time step of the given length.
+	 */
+	public static int getMaximumDisplacement(double dt) {
+		return (int)Math.ceil(dt * (SpeedMean + SpeedSigmas * SpeedStdDev) * 1e9);
+	}
 		
 	/**
 	 * Calculate the new location for this molecule.
 	 */
 	protected void move() {
-
-		// Get our current location use our own copy
-		int[] location = grid.getObjectLocation(this).clone();
-			
-		// Find our speed with a bit of noise
+		move(getInterval());
+	}
+	
+	/**
+	 * Calculate the new location for this molecule after the given number of time 
+	 * steps, the random walk of the time steps is taken all at once.
+	 */
+	private void move(int steps) {
+		// Get our current location, the lattice copies it when it is set so the scratch can be reused
+		Sparse3DLattice grid = Reactor.getInstance().grid;
+		int[] location = grid.getObjectLocation(this, scratch.get());
+		
+		// Walk and set the new location
 		XoRoShiRo128PlusRandom random = (XoRoShiRo128PlusRandom)ChemSim.getInstance().getRandom();
-		int speed = (int)Math.round((random.nextGaussian() * 1e-8 + 5.9e-7) * 1e9);
+		walk(location, random, SimulationProperties.getInstance().getDeltaT(), steps, Reactor.getInstance().dimensions);
+		grid.setObjectLocation(this, location);
+	}
+	
+	/**
+	 * Take a random walk of the given number of time steps from the location, the 
+	 * location is updated in place and kept in the bounds of the container. Since
+	 * the walk is computed with primitives, nothing is allocated.
+	 * 
+	 * @param location The location to walk from, updated in place.
+	 * @param random The random number generator to use.
+	 * @param dt The length of the time step, seconds.
+	 * @param steps The number of time steps to take at once.
+	 * @param bounds The dimensions of the container.
+	 */
+	public static void walk(int[] location, XoRoShiRo128PlusRandom random, double dt, int steps, int[] bounds) {
+		// Find our speed with a bit of noise
+		int speed = (int)Math.round((random.nextGaussian() * SpeedStdDev + SpeedMean) * 1e9);
 		
 		// Find random random angles
 		double theta = -Math.PI + 2 * Math.PI * random.nextDoubleFast();
 		double phi = -Math.PI + 2 * Math.PI * random.nextDoubleFast();
 		
-		// Convert the coordinates
-		SphericalCoordinates coords = new SphericalCoordinates(speed, theta, phi);
-		Vector3D sphere = coords.getCartesian();
+		// Convert the spherical coordinates to Cartesian ones
+		double sinPhi = Math.sin(phi);
+		double x = speed * Math.cos(theta) * sinPhi;
+		double y = speed * Math.sin(theta) * sinPhi;
+		double z = speed * Math.cos(phi);
 		
-		// Apply the vector with the dt adjustment
-		double dt = SimulationProperties.getInstance().getDeltaT();
-		location[0] += (int)(dt * sphere.getX());
-		location[1] += (int)(dt * sphere.getY());
-		location[2] += (int)(dt * sphere.getZ());
+		// Apply the vector with the dt adjustment, the walk grows with the square root of the steps
+		if (steps > 1) {
+			dt *= Math.sqrt(steps);
+		}
+		location[0] += (int)(dt * x);
+		location[1] += (int)(dt * y);
+		location[2] += (int)(dt * z);
 				
 		// Adjust the location as needed so we stay in the bounds of the container
+		int dx = bounds[0], dy = bounds[1], dz = bounds[2];
 		location[0] = (location[0] > dx) ? dx : location[0];
 		location[0] = (location[0] < 0) ? 0 : location[0];
 		
@@ -158,9 +410,6 @@ public class Molecule extends Steppable implements Entity {
 		
 		location[2] = (location[2] > dz) ? dz : location[2];
 		location[2] = (location[2] < 0) ? 0 : location[2];
-		
-		// Set the new location
-		grid.setObjectLocation(this, location);
 	}
 
 	/**
@@ -176,23 +425,33 @@ public class Molecule extends Steppable implements Entity {
 	 * Check to see if the two molecules are the same chemical entity.
 	 */
 	public boolean sameEntity(Molecule moleclue) {
-		return (formulaHash == moleclue.formulaHash);
+		return (species == moleclue.species);
 	}
 	
 	/**
-	 * Check to see if the two molecules are the same chemical entity.
+	 * Check to see if the molecule is the chemical entity with the given hash.
 	 */
 	public boolean sameEntity(int formulaHash) {
-		return (this.formulaHash == formulaHash);
+		return (Species.get(species).getHash() == formulaHash);
 	}
 
 	@Override
 	public Integer getEntityTypeTag() {
-		return formulaHash;
+		return Species.get(species).getTag();
+	}
+	
+	@Override
+	public int getAgentId() {
+		return agentId;
+	}
+	
+	@Override
+	public void setAgentId(int id) {
+		agentId = id;
 	}
 	
 	@Override
 	public String toString() {
-		return formula;
+		return getFormula();
 	}
 }
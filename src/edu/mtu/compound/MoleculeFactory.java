@@ -1,8 +1,6 @@
 package edu.mtu.compound;
 
-import java.util.List;
-
-import edu.mtu.reaction.BasicReaction;
+import edu.mtu.reaction.PathwayTable;
 import edu.mtu.reaction.ReactionRegistry;
 import edu.mtu.reactor.Reactor;
 import edu.mtu.simulation.ChemSim;
@@ -31,10 +29,24 @@ public class MoleculeFactory {
 			return;
 		}
 		
-		// Create and schedule the molecule
-		Molecule entity = new Molecule(formula);
-		ChemSim.getSchedule().insert(entity);
-		Reactor.getInstance().insert(entity, location.clone());
+		// Create and schedule the molecule, reusing one that was disposed of if we can
+		Molecule entity = MoleculePool.getInstance().acquire(formula);
+		schedule(entity);
+		Reactor.getInstance().insert(entity, location);
+		
+		// Molecules that were waiting for this species can react again
+		Reactor.getInstance().wake(entity);
+	}
+	
+	/**
+	 * Add the molecule to the schedule, molecules that only decay are not run until they do.
+	 */
+	public static void schedule(Molecule molecule) {
+		if (molecule.isDecayOnly()) {
+			ChemSim.getSchedule().insert(molecule, molecule.getDecayStep());
+		} else {
+			ChemSim.getSchedule().insert(molecule);
+		}
 	}
 	
 	/**
@@ -52,25 +64,15 @@ public class MoleculeFactory {
 	/**
 	 * Create a disproportionating molecule and ensure it is add to the schedule.
 	 * 
-	 * @param reactions associated with the molecule.
+	 * @param pathways of the reactants, shared by all of the molecules created from them.
+	 * @param consumed bitset of the pathways that cannot take place.
 	 * @param location of the molecule.
 	 */
-	public static void create(Molecule one, Molecule two, List<BasicReaction> reactions, final int[] location) {
-		// Create the list of reactions
-		BasicReaction[] rd = new BasicReaction[reactions.size()];
-		rd = reactions.toArray(rd);
-		
-		// Prepare the canonical order based upon the reactions
-		if (!one.getFormula().equals(rd[0].getReactants()[0])) {
-			Molecule temp = one;
-			one = two;
-			two = temp;
-		}
-		
+	public static void create(PathwayTable pathways, long consumed, final int[] location) {
 		// Create the entity
-		Molecule entity = DisproportionatingMolecule.create(one, two, rd);
+		Molecule entity = DisproportionatingMolecule.create(pathways, consumed);
 		ChemSim.getSchedule().insert(entity);
-		Reactor.getInstance().insert(entity, location.clone());
+		Reactor.getInstance().insert(entity, location);
 		ChemSim.getTracker().update(entity.getFormula(), 1);
 	}
 }
@@ -0,0 +1,168 @@
+package edu.mtu.compound;
+
+import java.util.ArrayList;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * Recycles the molecules that have been disposed of so that the products of the
+ * reactions reuse them instead of being allocated, which cuts down on the churn
+ * of the young generation when radicals are created and consumed at a high rate.
+ * Molecules are pooled by species, disproportionating molecules are pooled on
+ * their own since they may share the species of an ordinary molecule.
+ *
+ * A molecule that was disposed of is still held by the schedule until the end of
+ * the time step, or until the time step it was to decay on, so it is only returned
+ * to the pool once the schedule drops it, see recycle.
+ */
+public class MoleculePool {
+
+	// Maximum number of molecules of each species retained for reuse
+	private final static int MaxPoolSize = 1 << 16;
+
+	private static MoleculePool instance = new MoleculePool();
+
+	private boolean enabled;
+
+	// Molecules that were disposed of, but may still be held by the schedule
+	private ArrayList<Molecule> released = new ArrayList<Molecule>();
+
+	// Molecules that are ready to be reused, by species ordinal
+	private Int2ObjectOpenHashMap<ArrayList<Molecule>> molecules = new Int2ObjectOpenHashMap<ArrayList<Molecule>>();
+	private Int2ObjectOpenHashMap<ArrayList<Molecule>> disproportionating = new Int2ObjectOpenHashMap<ArrayList<Molecule>>();
+
+	// Number of molecules that were supplied by the pool, and that had to be allocated
+	private long hits, misses;
+
+	/**
+	 * Constructor.
+	 */
+	private MoleculePool() { }
+
+	/**
+	 * Get a reference to the MoleculePool singleton.
+	 */
+	public static MoleculePool getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Get a new molecule of the given formula, a disposed molecule is reused if one is available.
+	 */
+	public Molecule acquire(String formula) {
+		Molecule molecule = take(molecules, Species.get(formula));
+		if (molecule == null) {
+			return new Molecule(formula);
+		}
+		molecule.reset();
+		return molecule;
+	}
+
+	/**
+	 * Get a new disproportionating molecule of the given species, a disposed one is reused if 
+	 * one is available. Note that the pathways still need to be set.
+	 */
+	DisproportionatingMolecule acquireDisproportionating(Species species) {
+		Molecule molecule = take(disproportionating, species);
+		if (molecule == null) {
+			return new DisproportionatingMolecule(species.getFormula());
+		}
+		molecule.reset();
+		return (DisproportionatingMolecule)molecule;
+	}
+
+	/**
+	 * Remove all of the molecules from the pool and reset the counts.
+	 */
+	public synchronized void clear() {
+		released.clear();
+		molecules.clear();
+		disproportionating.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Get the number of molecules that were supplied by the pool.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of molecules that had to be allocated since the pool was empty.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Check to see if molecules are being recycled.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Note that the molecule has been disposed of, it is recycled once the schedule drops it.
+	 */
+	public void release(Molecule molecule) {
+		if (!enabled) {
+			return;
+		}
+		synchronized (this) {
+			released.add(molecule);
+		}
+	}
+
+	/**
+	 * Return the molecules that were released and are no longer held by the schedule
+	 * to the pool, must be called between time steps.
+	 */
+	public synchronized void recycle() {
+		int count = 0;
+		for (int ndx = 0; ndx < released.size(); ndx++) {
+			Molecule molecule = released.get(ndx);
+			if (molecule.isScheduled()) {
+				released.set(count++, molecule);
+				continue;
+			}
+
+			// Add the molecule to the pool for its species, if there is room
+			Int2ObjectOpenHashMap<ArrayList<Molecule>> pool = (molecule instanceof DisproportionatingMolecule) ? disproportionating : molecules;
+			int ordinal = molecule.getSpecies().getOrdinal();
+			ArrayList<Molecule> available = pool.get(ordinal);
+			if (available == null) {
+				available = new ArrayList<Molecule>();
+				pool.put(ordinal, available);
+			}
+			if (available.size() < MaxPoolSize) {
+				available.add(molecule);
+			}
+		}
+		released.subList(count, released.size()).clear();
+	}
+
+	/**
+	 * Enable or disable the recycling of molecules.
+	 */
+	public void setEnabled(boolean value) {
+		enabled = value;
+	}
+
+	/**
+	 * Take a molecule of the species from the pool, returns null if the pool does not have one.
+	 */
+	private synchronized Molecule take(Int2ObjectOpenHashMap<ArrayList<Molecule>> pool, Species species) {
+		if (!enabled) {
+			return null;
+		}
+		ArrayList<Molecule> available = pool.get(species.getOrdinal());
+		if (available == null || available.isEmpty()) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return available.remove(available.size() - 1);
+	}
+}
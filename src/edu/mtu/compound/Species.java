@@ -0,0 +1,124 @@
+package edu.mtu.compound;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.mtu.reaction.MoleculeDescription;
+import edu.mtu.reaction.ReactionRegistry;
+import edu.mtu.util.FnvHash;
+
+/**
+ * The state that is shared by all of the molecules of a chemical species, the
+ * molecules only hold the ordinal of their species along with their own state.
+ *
+ * Species are created the first time their formula is seen and are never
+ * removed, so the ordinal of a species does not change over the run. The
+ * description of the species is updated whenever the reactions are loaded.
+ */
+public final class Species {
+
+	// Parameters for sizing the table, this is a point where tuning can take place
+	private final static int InitialSize = 64;
+	private final static int GrowthRatio = 2;
+
+	// The species indexed by their ordinal, and by their formula
+	private static volatile Species[] table = new Species[InitialSize];
+	private static int count;
+	private final static ConcurrentHashMap<String, Species> formulas = new ConcurrentHashMap<String, Species>();
+
+	private final short ordinal;
+	private final String formula;
+
+	// Used to identify the species in the lattice, boxed once for all of the molecules
+	private final int hash;
+	private final Integer tag;
+
+	private volatile MoleculeDescription md;
+
+	/**
+	 * Constructor.
+	 */
+	private Species(short ordinal, String formula) {
+		this.ordinal = ordinal;
+		this.formula = formula;
+		hash = FnvHash.fnv1a32(formula);
+		tag = hash;
+		md = describe(formula);
+	}
+
+	/**
+	 * Get the species with the given formula, creating it if this is the first time it is seen.
+	 */
+	public static Species get(String formula) {
+		Species species = formulas.get(formula);
+		return (species != null) ? species : create(formula);
+	}
+
+	/**
+	 * Get the species with the given ordinal.
+	 */
+	public static Species get(int ordinal) {
+		return table[ordinal];
+	}
+
+	/**
+	 * Update the description of every species from the reactions that are currently loaded.
+	 */
+	public static synchronized void refresh() {
+		for (int ndx = 0; ndx < count; ndx++) {
+			table[ndx].md = describe(table[ndx].formula);
+		}
+	}
+
+	/**
+	 * Add the species, the table is filled in before it is published so that
+	 * other threads never see an ordinal that it does not contain yet.
+	 */
+	private static synchronized Species create(String formula) {
+		Species species = formulas.get(formula);
+		if (species != null) {
+			return species;
+		}
+		if (count > Short.MAX_VALUE) {
+			throw new IllegalStateException("Too many species, at most " + (Short.MAX_VALUE + 1) + " are supported.");
+		}
+		species = new Species((short)count, formula);
+		Species[] working = (count == table.length) ? Arrays.copyOf(table, table.length * GrowthRatio) : table;
+		working[count++] = species;
+		table = working;
+		formulas.put(formula, species);
+		return species;
+	}
+
+	/**
+	 * Get the description of the formula, null if the reactions have not been loaded
+	 * or the formula is not part of them.
+	 */
+	private static MoleculeDescription describe(String formula) {
+		ReactionRegistry registry = ReactionRegistry.getInstance();
+		return (registry == null) ? null : registry.getMoleculeDescription(formula);
+	}
+
+	public short getOrdinal() {
+		return ordinal;
+	}
+
+	public String getFormula() {
+		return formula;
+	}
+
+	public int getHash() {
+		return hash;
+	}
+
+	public Integer getTag() {
+		return tag;
+	}
+
+	/**
+	 * Get the description of the species, null if it does not have one.
+	 */
+	public MoleculeDescription getDescription() {
+		return md;
+	}
+}
@@ -0,0 +1,155 @@
+package edu.mtu.primitives;
+
+import java.util.Arrays;
+
+/**
+ * The state of the entities in a lattice, stored as parallel arrays of primitives
+ * indexed by the id of the entity (structure of arrays). This replaces an object
+ * per entity along with its location array and map entry, which dominate the
+ * heap and the work of the garbage collector once there are 1e8 entities.
+ *
+ * The ids of removed entities are kept on a free list and handed out again before
+ * the store grows, so the arrays only grow with the peak population. The id of an
+ * entity is recorded by the entity itself, see Entity.
+ */
+class AgentStore {
+
+	// Parameters for sizing and resizing the arrays, this is a point where tuning can take place
+	private final static int INITIAL_SIZE = 16;
+	private final static int GROWTH_RATIO = 2;
+
+	// The entity and its tag, cached so the indices don't need to look them up
+	Entity[] entities;
+	int[] tags;
+
+	// The presence bit of the tag as a shift, see Cell
+	byte[] bits;
+
+	// Location of the entity in the lattice
+	int[] x, y, z;
+
+	// Entities sharing the exact same point in the lattice
+	Cell[] colocated;
+
+	// Position of the entity in the set of entities sharing its tag
+	int[] tagIndices;
+
+	// Ids that have been released and can be reused
+	private int[] free;
+	private int freeCount;
+
+	// Number of ids that have been handed out, and the number currently in use
+	private int size;
+	private int count;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity The number of entities the store is expected to contain initially.
+	 */
+	public AgentStore(int capacity) {
+		capacity = Math.max(INITIAL_SIZE, capacity);
+		entities = new Entity[capacity];
+		tags = new int[capacity];
+		bits = new byte[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		z = new int[capacity];
+		colocated = new Cell[capacity];
+		tagIndices = new int[capacity];
+		free = new int[INITIAL_SIZE];
+	}
+
+	/**
+	 * Allocate an id for the entity, note that the location is not set.
+	 *
+	 * @param entity The entity to add.
+	 * @param tag The tag of the entity.
+	 * @param species The presence bit of the tag, see Cell.
+	 * @return The id of the entity.
+	 */
+	public int allocate(Entity entity, int tag, long species) {
+		int id;
+		if (freeCount > 0) {
+			id = free[--freeCount];
+		} else {
+			if (size == entities.length) {
+				grow(entities.length * GROWTH_RATIO);
+			}
+			id = size++;
+		}
+		entities[id] = entity;
+		tags[id] = tag;
+		bits[id] = (byte)Long.numberOfTrailingZeros(species);
+		tagIndices[id] = -1;
+		entity.setAgentId(id);
+		count++;
+		return id;
+	}
+
+	/**
+	 * Check to see if the id belongs to the entity.
+	 */
+	public boolean contains(int id, Entity entity) {
+		return id >= 0 && id < size && entities[id] == entity;
+	}
+
+	/**
+	 * Get the number of entities in the store.
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Get the squared distance between the entities with the given ids.
+	 */
+	public long distanceSquared(int one, int two) {
+		long dx = x[one] - x[two];
+		long dy = y[one] - y[two];
+		long dz = z[one] - z[two];
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	/**
+	 * Release the id of the entity so that it can be reused.
+	 */
+	public void release(int id) {
+		entities[id].setAgentId(-1);
+		entities[id] = null;
+		colocated[id] = null;
+		if (freeCount == free.length) {
+			free = Arrays.copyOf(free, free.length * GROWTH_RATIO);
+		}
+		free[freeCount++] = id;
+		count--;
+	}
+
+	/**
+	 * Get the number of ids that have been handed out, valid ids are [0, size).
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the presence bit of the tag of the entity, see Cell.
+	 */
+	public long species(int id) {
+		return 1L << bits[id];
+	}
+
+	/**
+	 * Resize the arrays to the given capacity.
+	 */
+	private void grow(int capacity) {
+		entities = Arrays.copyOf(entities, capacity);
+		tags = Arrays.copyOf(tags, capacity);
+		bits = Arrays.copyOf(bits, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		z = Arrays.copyOf(z, capacity);
+		colocated = Arrays.copyOf(colocated, capacity);
+		tagIndices = Arrays.copyOf(tagIndices, capacity);
+	}
+}
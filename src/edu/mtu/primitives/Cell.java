@@ -0,0 +1,118 @@
+package edu.mtu.primitives;
+
+import java.util.Arrays;
+
+/**
+ * A bag of entity ids that also tracks which species are present in it. Each
+ * species is assigned a bit based upon its dense ordinal, so a search can
+ * reject a cell that does not contain the species it is looking for with a
+ * single AND instead of iterating over the contents of the bag.
+ *
+ * Note that when there are more than 64 species the bits are shared, which
+ * means that the mask may report a species as present when it is not, but
+ * it will never report a species that is present as absent.
+ */
+class Cell {
+
+	// Parameters for resizing the cell, this is a point where tuning can take place
+	private final static int GROWTH_RATIO = 2;
+
+	// The ids in the cell, packed at the front of the array
+	int[] ids;
+	int numObjs;
+
+	// The species present in the cell
+	long species;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity The initial capacity of the cell.
+	 */
+	public Cell(int capacity) {
+		ids = new int[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Get the bit for the species with the given ordinal.
+	 */
+	public static long bit(int ordinal) {
+		return 1L << (ordinal & 63);
+	}
+
+	/**
+	 * Add the id to the cell.
+	 */
+	public void add(int id) {
+		if (numObjs == ids.length) {
+			ids = Arrays.copyOf(ids, ids.length * GROWTH_RATIO);
+		}
+		ids[numObjs++] = id;
+	}
+
+	/**
+	 * Add all of the ids in the other cell to this one.
+	 */
+	public void addAll(Cell other) {
+		if (numObjs + other.numObjs > ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(ids.length * GROWTH_RATIO, numObjs + other.numObjs));
+		}
+		System.arraycopy(other.ids, 0, ids, numObjs, other.numObjs);
+		numObjs += other.numObjs;
+	}
+
+	/**
+	 * Remove all of the ids from the cell.
+	 */
+	public void clear() {
+		numObjs = 0;
+	}
+
+	/**
+	 * Get the id at the given position, valid positions are [0, numObjs).
+	 */
+	public int get(int ndx) {
+		return ids[ndx];
+	}
+
+	/**
+	 * Check to see if the species might be present in the cell.
+	 */
+	public boolean mayContain(long bit) {
+		return (species & bit) != 0;
+	}
+
+	/**
+	 * Remove the id from the cell, the last id is moved into the position
+	 * vacated so the order of the cell is not preserved.
+	 */
+	public void remove(int id) {
+		for (int ndx = 0; ndx < numObjs; ndx++) {
+			if (ids[ndx] == id) {
+				ids[ndx] = ids[--numObjs];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Resize the cell to the given capacity, provided it still fits the ids.
+	 */
+	public void shrink(int capacity) {
+		if (capacity >= numObjs && capacity < ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(1, capacity));
+		}
+	}
+
+	/**
+	 * Recalculate the species present in the cell, this should be called after
+	 * an entity is removed.
+	 */
+	public void updateSpecies(AgentStore store) {
+		long present = 0;
+		for (int ndx = 0; ndx < numObjs; ndx++) {
+			present |= store.species(ids[ndx]);
+		}
+		species = present;
+	}
+}
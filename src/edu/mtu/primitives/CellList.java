@@ -0,0 +1,198 @@
+package edu.mtu.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * A uniform cell list (bucket grid) that divides the lattice into cubes of a
+ * fixed size. Entities are placed in the cell that contains their location,
+ * which allows radius searches to only visit the cells that overlap the search
+ * sphere instead of every entity with a given tag.
+ *
+ * The cell size should be at least the largest search radius, which means a
+ * typical search visits the 27 cells surrounding the entity.
+ * 
+ * When partitioned, each tag is given its own set of cells so that a search
+ * only visits entities with the tag being searched for. This avoids scanning
+ * abundant species when searching for rare ones.
+ */
+class CellList implements SpatialIndex {
+
+	// Parameters for sizing bags, this is a point where tuning can take place
+	private final static int INITIAL_BAG_SIZE = 8;
+
+	// Length of the cell along each axis
+	private final int cellSize;
+	
+	// Number of cells scanned or rejected based upon the species present
+	private final PresenceCounts presence = new PresenceCounts();
+
+	// The store that holds the locations of the entities
+	private final AgentStore store;
+
+	// The cells that have been populated, note that the bags contain the
+	// ids of the entities so the location can be checked in the store
+	private Long2ObjectOpenHashMap<Cell> cells;
+	
+	// The cells for each tag when partitioned, null otherwise
+	private Int2ObjectOpenHashMap<Long2ObjectOpenHashMap<Cell>> partitions;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store The store that holds the locations of the entities.
+	 * @param cellSize The length of the cell along each axis.
+	 */
+	public CellList(AgentStore store, int cellSize) {
+		if (cellSize < 1) {
+			throw new IllegalArgumentException("The cell size must be at least one.");
+		}
+		this.store = store;
+		this.cellSize = cellSize;
+		cells = new Long2ObjectOpenHashMap<Cell>();
+	}
+	
+	/**
+	 * Constructor, partition the cells by the tags provided.
+	 * 
+	 * @param store The store that holds the locations of the entities.
+	 * @param cellSize The length of the cell along each axis.
+	 * @param tags The tags to partition the cells by.
+	 */
+	public CellList(AgentStore store, int cellSize, int[] tags) {
+		this(store, cellSize);
+		cells = null;
+		partitions = new Int2ObjectOpenHashMap<Long2ObjectOpenHashMap<Cell>>(tags.length);
+		for (int tag : tags) {
+			partitions.put(tag, new Long2ObjectOpenHashMap<Cell>());
+		}
+	}
+
+	@Override
+	public int findFirst(final int origin, final int tag, final long species, final int radius) {
+		final Long2ObjectOpenHashMap<Cell> cells = getCells(tag);
+		final int[] xs = store.x, ys = store.y, zs = store.z, tags = store.tags;
+		final int x1 = xs[origin], y1 = ys[origin], z1 = zs[origin];
+		final long limit = (long)radius * radius;
+
+		// Find the range of cells that overlap with the sphere, note that
+		// the lattice does not extend into negative space
+		int minX = Math.max(0, x1 - radius) / cellSize, maxX = (x1 + radius) / cellSize;
+		int minY = Math.max(0, y1 - radius) / cellSize, maxY = (y1 + radius) / cellSize;
+		int minZ = Math.max(0, z1 - radius) / cellSize, maxZ = (z1 + radius) / cellSize;
+
+		// Note the cells scanned and rejected, they are counted once the search is done
+		int hits = 0, misses = 0;
+		try {
+			for (int cx = minX; cx <= maxX; cx++) {
+				for (int cy = minY; cy <= maxY; cy++) {
+					for (int cz = minZ; cz <= maxZ; cz++) {
+						Cell bag = cells.get(Sparse3DLattice.packCoordinates(cx, cy, cz));
+						if (bag == null) {
+							continue;
+						}
+					
+						// Skip the cell if the species is not present
+						if (!bag.mayContain(species)) {
+							misses++;
+							continue;
+						}
+						hits++;
+
+						int size = bag.numObjs;
+						for (int ndx = 0; ndx < size; ndx++) {
+							// Press on if this is the wrong tag or the origin
+							int id = bag.ids[ndx];
+							if (tags[id] != tag || id == origin) {
+								continue;
+							}
+
+							// Check the squared Euclidean distance
+							long x = x1 - xs[id];
+							long y = y1 - ys[id];
+							long z = z1 - zs[id];
+							if (x*x + y*y + z*z <= limit) {
+								return id;
+							}
+						}
+					}
+				}
+			}
+
+			// Nothing was found
+			return -1;
+		} finally {
+			presence.add(hits, misses);
+		}
+	}
+
+	/**
+	 * Get the cells that contain the given tag.
+	 */
+	private Long2ObjectOpenHashMap<Cell> getCells(int tag) {
+		return (partitions == null) ? cells : partitions.get(tag);
+	}
+	
+	@Override
+	public long getPresenceHits() {
+		return presence.getHits();
+	}
+
+	@Override
+	public long getPresenceMisses() {
+		return presence.getMisses();
+	}
+	
+	@Override
+	public void insert(int id) {
+		long key = key(store.x[id], store.y[id], store.z[id]);
+		Long2ObjectOpenHashMap<Cell> cells = getCells(store.tags[id]);
+		Cell bag = cells.get(key);
+		if (bag == null) {
+			bag = new Cell(INITIAL_BAG_SIZE);
+			cells.put(key, bag);
+		}
+		bag.add(id);
+		bag.species |= store.species(id);
+	}
+
+	@Override
+	public void remove(int id) {
+		remove(id, key(store.x[id], store.y[id], store.z[id]));
+	}
+
+	/**
+	 * Remove the entity from the cell with the given key.
+	 */
+	private void remove(int id, long key) {
+		Long2ObjectOpenHashMap<Cell> cells = getCells(store.tags[id]);
+		Cell bag = cells.get(key);
+		if (bag != null) {
+			bag.remove(id);
+			bag.updateSpecies(store);
+			
+			// Evict empty cells so the map only retains occupied ones
+			if (bag.numObjs == 0) {
+				cells.remove(key);
+			}
+		}
+	}
+
+	@Override
+	public void update(int id, int x, int y, int z) {
+		// Nothing to do if we are still in the same cell
+		long previous = key(x, y, z);
+		if (key(store.x[id], store.y[id], store.z[id]) == previous) {
+			return;
+		}
+		remove(id, previous);
+		insert(id);
+	}
+
+	/**
+	 * Get the key of the cell that contains the location.
+	 */
+	private long key(int x, int y, int z) {
+		return Sparse3DLattice.packCoordinates(x / cellSize, y / cellSize, z / cellSize);
+	}
+}
@@ -0,0 +1,152 @@
+package edu.mtu.primitives;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import sim.util.Bag;
+
+/**
+ * A lattice that can be shared by threads. Searches and lookups only read the 
+ * lattice, so they are allowed to run at the same time while adding, moving, or
+ * removing an entity requires exclusive access.
+ * 
+ * Note that the lock only protects the structure of the lattice, callers that
+ * need the results of a search to remain valid must ensure that no other thread
+ * is updating the same region of the lattice. Likewise, the presence counts are
+ * approximate when searches are run at the same time.
+ */
+class ConcurrentSparse3DLattice extends Sparse3DLattice {
+
+	private final Lock read;
+	private final Lock write;
+
+	/**
+	 * Constructor, use create3DLattice.
+	 */
+	ConcurrentSparse3DLattice() {
+		ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		read = lock.readLock();
+		write = lock.writeLock();
+	}
+
+	@Override
+	public Entity findFirstByTag(Entity entity, int tag, int radius) {
+		read.lock();
+		try {
+			return super.findFirstByTag(entity, tag, radius);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public List<Entity> getAllObjects() {
+		read.lock();
+		try {
+			return super.getAllObjects();
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Bag getColocatedObjects(Entity object) {
+		read.lock();
+		try {
+			return super.getColocatedObjects(object);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public long getDistanceSquared(Entity one, Entity two) {
+		read.lock();
+		try {
+			return super.getDistanceSquared(one, two);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public void prepareStencils(int[] radii) {
+		write.lock();
+		try {
+			super.prepareStencils(radii);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@Override
+	public Entity getFirstEntity(int tag) {
+		read.lock();
+		try {
+			return super.getFirstEntity(tag);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public int getTagCount(int tag) {
+		read.lock();
+		try {
+			return super.getTagCount(tag);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public int[] getObjectLocation(Entity object) {
+		read.lock();
+		try {
+			return super.getObjectLocation(object);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public int[] getObjectLocation(Entity object, int[] location) {
+		read.lock();
+		try {
+			return super.getObjectLocation(object, location);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public Bag getObjectsAtLocation(int[] location) {
+		read.lock();
+		try {
+			return super.getObjectsAtLocation(location);
+		} finally {
+			read.unlock();
+		}
+	}
+
+	@Override
+	public int[] remove(Entity object) {
+		write.lock();
+		try {
+			return super.remove(object);
+		} finally {
+			write.unlock();
+		}
+	}
+
+	@Override
+	public void setObjectLocation(Entity object, int[] location) {
+		write.lock();
+		try {
+			super.setObjectLocation(object, location);
+		} finally {
+			write.unlock();
+		}
+	}
+}
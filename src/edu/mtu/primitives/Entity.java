@@ -5,4 +5,14 @@ public interface Entity {
 	 * A unique integer value that identifies this entity type.
 	 */
 	public Integer getEntityTypeTag();
+
+	/**
+	 * The id of the entity in the lattice that contains it, or -1 if it is not in one.
+	 */
+	public int getAgentId();
+
+	/**
+	 * Set the id of the entity, this is maintained by the lattice.
+	 */
+	public void setAgentId(int id);
 }
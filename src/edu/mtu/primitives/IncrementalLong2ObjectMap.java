@@ -0,0 +1,241 @@
+package edu.mtu.primitives;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * An open addressing hash map from long keys to objects that grows without a
+ * stop-the-world rehash. When the map exceeds its load factor a table twice the
+ * size is allocated and the entries of the previous table are moved over a few
+ * slots at a time as entries are added. Until the previous table has been
+ * drained, lookups check both tables.
+ *
+ * Null values are not supported since they are used to mark empty slots.
+ */
+class IncrementalLong2ObjectMap<V> {
+
+	// Parameters for sizing the tables, this is a point where tuning can take place
+	private final static float LOAD_FACTOR = 0.75f;
+	private final static int MIN_CAPACITY = 16;
+
+	// Number of slots of the previous table that are migrated each time an entry is
+	// added, this needs to drain the previous table before the current one is full
+	private final static int MIGRATION_STEPS = 4;
+
+	// Marks slots in the previous table that have been removed or migrated
+	private final static Object REMOVED = new Object();
+
+	// The table that entries are added to
+	private long[] keys;
+	private Object[] values;
+	private int mask, maxFill, size;
+
+	// The table being drained, null when the map is not growing
+	private long[] previousKeys;
+	private Object[] previousValues;
+	private int cursor, previousSize;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param expected The number of entries that are expected initially.
+	 */
+	public IncrementalLong2ObjectMap(int expected) {
+		allocate(HashCommon.arraySize(Math.max(expected, MIN_CAPACITY), LOAD_FACTOR));
+	}
+
+	/**
+	 * Get the value associated with the key, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int pos = find(keys, values, key);
+		if (pos != -1) {
+			return (V)values[pos];
+		}
+		if (previousValues != null) {
+			pos = find(previousKeys, previousValues, key);
+			if (pos != -1) {
+				return (V)previousValues[pos];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check to see if the map is growing, i.e., there are still entries to be migrated.
+	 */
+	public boolean isGrowing() {
+		return previousValues != null;
+	}
+
+	/**
+	 * Associate the value with the key, returns the previous value or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Null values are not supported.");
+		}
+
+		// Make sure the key is only ever in one of the tables
+		Object previous = null;
+		if (previousValues != null) {
+			int pos = find(previousKeys, previousValues, key);
+			if (pos != -1) {
+				previous = previousValues[pos];
+				previousValues[pos] = REMOVED;
+				previousSize--;
+			}
+		}
+		Object replaced = insert(key, value);
+
+		// Move some of the previous table over, or start growing
+		if (previousValues != null) {
+			migrate(MIGRATION_STEPS);
+		}
+		if (size > maxFill) {
+			grow();
+		}
+		return (V)((replaced != null) ? replaced : previous);
+	}
+
+	/**
+	 * Remove the value associated with the key, returns the value or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int pos = find(keys, values, key);
+		if (pos != -1) {
+			Object value = values[pos];
+			shiftKeys(pos);
+			size--;
+			return (V)value;
+		}
+
+		// Note that the slot is marked as removed so lookups continue past it
+		if (previousValues != null) {
+			pos = find(previousKeys, previousValues, key);
+			if (pos != -1) {
+				Object value = previousValues[pos];
+				previousValues[pos] = REMOVED;
+				previousSize--;
+				return (V)value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the number of entries in the map.
+	 */
+	public int size() {
+		return size + previousSize;
+	}
+
+	/**
+	 * Allocate the current table with the given capacity, a power of two.
+	 */
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		maxFill = HashCommon.maxFill(capacity, LOAD_FACTOR);
+		size = 0;
+	}
+
+	/**
+	 * Find the slot containing the key in the table, or -1 if it is not present.
+	 */
+	private static int find(long[] keys, Object[] values, long key) {
+		int mask = keys.length - 1;
+		int pos = (int)HashCommon.mix(key) & mask;
+		while (values[pos] != null) {
+			if (keys[pos] == key && values[pos] != REMOVED) {
+				return pos;
+			}
+			pos = (pos + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Start growing the map by making the current table the previous one.
+	 */
+	private void grow() {
+		// Should not happen, but finish any migration that is still in progress
+		if (previousValues != null) {
+			migrate(previousValues.length);
+		}
+
+		previousKeys = keys;
+		previousValues = values;
+		previousSize = size;
+		cursor = 0;
+		allocate(keys.length * 2);
+	}
+
+	/**
+	 * Insert the value into the current table, returns the value replaced or null.
+	 */
+	private Object insert(long key, Object value) {
+		int pos = (int)HashCommon.mix(key) & mask;
+		while (values[pos] != null) {
+			if (keys[pos] == key) {
+				Object replaced = values[pos];
+				values[pos] = value;
+				return replaced;
+			}
+			pos = (pos + 1) & mask;
+		}
+		keys[pos] = key;
+		values[pos] = value;
+		size++;
+		return null;
+	}
+
+	/**
+	 * Move the given number of slots from the previous table to the current one.
+	 */
+	private void migrate(int steps) {
+		int end = Math.min(cursor + steps, previousValues.length);
+		for (; cursor < end; cursor++) {
+			Object value = previousValues[cursor];
+			if (value == null || value == REMOVED) {
+				continue;
+			}
+			insert(previousKeys[cursor], value);
+			previousValues[cursor] = REMOVED;
+			previousSize--;
+		}
+
+		// Release the previous table once it has been drained
+		if (cursor == previousValues.length) {
+			previousKeys = null;
+			previousValues = null;
+		}
+	}
+
+	/**
+	 * Remove the entry at the given slot of the current table by shifting the
+	 * entries that follow it back, this keeps the probe sequences intact.
+	 */
+	private void shiftKeys(int pos) {
+		int last, slot;
+		while (true) {
+			pos = ((last = pos) + 1) & mask;
+			while (true) {
+				if (values[pos] == null) {
+					values[last] = null;
+					return;
+				}
+				slot = (int)HashCommon.mix(keys[pos]) & mask;
+				if (last <= pos ? (last >= slot || slot > pos) : (last >= slot && slot > pos)) {
+					break;
+				}
+				pos = (pos + 1) & mask;
+			}
+			keys[last] = keys[pos];
+			values[last] = values[pos];
+		}
+	}
+}
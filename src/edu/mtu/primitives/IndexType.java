@@ -0,0 +1,28 @@
+package edu.mtu.primitives;
+
+/**
+ * The types of spatial indices that can be used by the lattice for radius searches.
+ */
+public enum IndexType {
+	/**
+	 * Single cell list that contains all of the entities.
+	 */
+	CELL,
+	
+	/**
+	 * Cell list that is partitioned by the entity tag so searches only visit
+	 * cells that contain the tag being searched for.
+	 */
+	PARTITIONED,
+	
+	/**
+	 * Cells stored in Morton (Z-order) so that searches are range scans.
+	 */
+	MORTON,
+	
+	/**
+	 * Octree for each tag that adapts to the entity distribution, suitable for 
+	 * search radii that differ by orders of magnitude.
+	 */
+	OCTREE
+}
@@ -0,0 +1,378 @@
+package edu.mtu.primitives;
+
+import java.util.Arrays;
+
+/**
+ * A spatial index that divides the lattice into cubes of a fixed size and stores
+ * them in Morton (Z-order) order, keyed by interleaving the bits of the cell
+ * coordinates. Since cells that are close in space tend to be close in the
+ * ordering, a radius search becomes a small number of contiguous key range scans
+ * over the bounding box of the sphere instead of independent hash probes.
+ *
+ * The cells are divided into radix buckets by the highest bits of their codes,
+ * each bucket holds a sorted array of the codes and a parallel array of the 
+ * cells. A scan finds its start with a binary search and then steps through the
+ * arrays, which keeps it contiguous in memory, while adding or evicting a cell
+ * only shifts the bucket that holds it. When the scan leaves the bounding box,
+ * the next code inside the box is found using the BIGMIN calculation and the 
+ * scan resumes from there.
+ *
+ * Source: Tropf and Herzog, 1981
+ */
+class MortonIndex implements SpatialIndex {
+
+	// Parameters for sizing bags and buckets, this is a point where tuning can take place
+	private final static int INITIAL_BAG_SIZE = 8;
+	private final static int INITIAL_BUCKET_SIZE = 4;
+	private final static int GROWTH_RATIO = 2;
+	
+	// Number of buckets, as a power of two
+	private final static int RADIX_BITS = 15;
+	private final static int BUCKETS = 1 << RADIX_BITS;
+
+	// Masks for the bits of each axis once interleaved, z occupies the lowest bit
+	private final static long Z_MASK = 0x1249249249249249L;
+	private final static long[] AXIS_MASKS = { Z_MASK, Z_MASK << 1, Z_MASK << 2 };
+
+	// The highest bit that is used by the codes
+	private final static int HIGHEST_BIT = 62;
+
+	// Length of the cell along each axis
+	private final int cellSize;
+	
+	// Number of cells scanned or rejected based upon the species present
+	private final PresenceCounts presence = new PresenceCounts();
+
+	// The store that holds the locations of the entities
+	private final AgentStore store;
+
+	// The cells that have been populated, each bucket holds the sorted codes and 
+	// the cells with them, note that the bags contain the ids of the entities
+	private final long[][] codes = new long[BUCKETS][];
+	private final Cell[][] bags = new Cell[BUCKETS][];
+	private final int[] sizes = new int[BUCKETS];
+	
+	// Number of low bits of the code below the radix, grows with the codes
+	private int shift;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store The store that holds the locations of the entities.
+	 * @param cellSize The length of the cell along each axis.
+	 */
+	public MortonIndex(AgentStore store, int cellSize) {
+		if (cellSize < 1) {
+			throw new IllegalArgumentException("The cell size must be at least one.");
+		}
+		this.store = store;
+		this.cellSize = cellSize;
+	}
+
+	@Override
+	public int findFirst(final int origin, final int tag, final long species, final int radius) {
+		final int[] xs = store.x, ys = store.y, zs = store.z, tags = store.tags;
+		final int x1 = xs[origin], y1 = ys[origin], z1 = zs[origin];
+		final long limit = (long)radius * radius;
+
+		// Find the bounding box of the sphere in cell coordinates, note that
+		// the lattice does not extend into negative space
+		final int minX = Math.max(0, x1 - radius) / cellSize, maxX = (x1 + radius) / cellSize;
+		final int minY = Math.max(0, y1 - radius) / cellSize, maxY = (y1 + radius) / cellSize;
+		final int minZ = Math.max(0, z1 - radius) / cellSize, maxZ = (z1 + radius) / cellSize;
+		final long min = encode(minX, minY, minZ), max = encode(maxX, maxY, maxZ);
+
+		// Note the cells scanned and rejected, they are counted once the search is done
+		int hits = 0, misses = 0;
+		try {
+			// Nothing is populated beyond the last bucket
+			int bucket = (int)(min >>> shift);
+			if (bucket >= BUCKETS) {
+				return -1;
+			}
+			int position = lowerBound(bucket, 0, min);
+			while (true) {
+				// Move on to the next bucket once this one is done, jumping ahead if it starts outside of the box
+				if (position == sizes[bucket]) {
+					if (++bucket == BUCKETS) {
+						return -1;
+					}
+					long start = (long)bucket << shift;
+					if (start > max) {
+						return -1;
+					}
+					position = 0;
+					if (!contains(start, min, max)) {
+						start = bigMin(start, min, max);
+						if ((start >>> shift) >= BUCKETS) {
+							return -1;
+						}
+						bucket = (int)(start >>> shift);
+						position = lowerBound(bucket, 0, start);
+					}
+					continue;
+				}
+				
+				// We are past the end of the box, so we are done
+				long code = codes[bucket][position];
+				if (code > max) {
+					return -1;
+				}
+
+				// Outside of the box, find the next code that is inside and seek to it
+				if (!contains(code, min, max)) {
+					long start = bigMin(code, min, max);
+					if ((start >>> shift) >= BUCKETS) {
+						return -1;
+					}
+					int next = (int)(start >>> shift);
+					position = lowerBound(next, (next == bucket) ? position + 1 : 0, start);
+					bucket = next;
+					continue;
+				}
+
+				// Skip the cell if the species is not present
+				Cell bag = bags[bucket][position++];
+				if (!bag.mayContain(species)) {
+					misses++;
+					continue;
+				}
+				hits++;
+			
+				// Check the entities in the cell
+				int size = bag.numObjs;
+				for (int ndx = 0; ndx < size; ndx++) {
+					// Press on if this is the wrong tag or the origin
+					int id = bag.ids[ndx];
+					if (tags[id] != tag || id == origin) {
+						continue;
+					}
+
+					// Check the squared Euclidean distance
+					long x = x1 - xs[id];
+					long y = y1 - ys[id];
+					long z = z1 - zs[id];
+					if (x*x + y*y + z*z <= limit) {
+						return id;
+					}
+				}
+			}
+		} finally {
+			presence.add(hits, misses);
+		}
+	}
+
+	@Override
+	public long getPresenceHits() {
+		return presence.getHits();
+	}
+
+	@Override
+	public long getPresenceMisses() {
+		return presence.getMisses();
+	}
+	
+	@Override
+	public void insert(int id) {
+		long key = key(store.x[id], store.y[id], store.z[id]);
+		
+		// Widen the buckets if the code is past the last one
+		while ((key >>> shift) >= BUCKETS) {
+			widen();
+		}
+		
+		// Add the cell if this is the first entity in it
+		int bucket = (int)(key >>> shift);
+		int position = lowerBound(bucket, 0, key);
+		if (position == sizes[bucket] || codes[bucket][position] != key) {
+			add(bucket, position, key, new Cell(INITIAL_BAG_SIZE));
+		}
+		Cell bag = bags[bucket][position];
+		bag.add(id);
+		bag.species |= store.species(id);
+	}
+
+	@Override
+	public void remove(int id) {
+		remove(id, key(store.x[id], store.y[id], store.z[id]));
+	}
+
+	/**
+	 * Add the cell to the bucket at the given position, shifting those after it.
+	 */
+	private void add(int bucket, int position, long key, Cell bag) {
+		int size = sizes[bucket];
+		if (codes[bucket] == null) {
+			codes[bucket] = new long[INITIAL_BUCKET_SIZE];
+			bags[bucket] = new Cell[INITIAL_BUCKET_SIZE];
+		} else if (size == codes[bucket].length) {
+			codes[bucket] = Arrays.copyOf(codes[bucket], size * GROWTH_RATIO);
+			bags[bucket] = Arrays.copyOf(bags[bucket], size * GROWTH_RATIO);
+		}
+		System.arraycopy(codes[bucket], position, codes[bucket], position + 1, size - position);
+		System.arraycopy(bags[bucket], position, bags[bucket], position + 1, size - position);
+		codes[bucket][position] = key;
+		bags[bucket][position] = bag;
+		sizes[bucket]++;
+	}
+	
+	/**
+	 * Find the first position in the bucket, starting from the one given, with a code 
+	 * that is not less than the key.
+	 */
+	private int lowerBound(int bucket, int from, long key) {
+		int size = sizes[bucket];
+		if (from >= size) {
+			return size;
+		}
+		int position = Arrays.binarySearch(codes[bucket], from, size, key);
+		return (position < 0) ? -(position + 1) : position;
+	}
+	
+	/**
+	 * Remove the entity from the cell with the given key.
+	 */
+	private void remove(int id, long key) {
+		if ((key >>> shift) >= BUCKETS) {
+			return;
+		}
+		int bucket = (int)(key >>> shift);
+		int position = lowerBound(bucket, 0, key);
+		if (position == sizes[bucket] || codes[bucket][position] != key) {
+			return;
+		}
+		Cell bag = bags[bucket][position];
+		bag.remove(id);
+		bag.updateSpecies(store);
+		
+		// Evict empty cells so the buckets only retain occupied ones
+		if (bag.numObjs == 0) {
+			int size = --sizes[bucket];
+			System.arraycopy(codes[bucket], position + 1, codes[bucket], position, size - position);
+			System.arraycopy(bags[bucket], position + 1, bags[bucket], position, size - position);
+			bags[bucket][size] = null;
+		}
+	}
+
+	@Override
+	public void update(int id, int x, int y, int z) {
+		// Nothing to do if we are still in the same cell
+		long previous = key(x, y, z);
+		if (key(store.x[id], store.y[id], store.z[id]) == previous) {
+			return;
+		}
+		remove(id, previous);
+		insert(id);
+	}
+
+	/**
+	 * Double the range of codes each bucket covers, the cells are redistributed 
+	 * in order so the buckets remain sorted. This happens only a few times as the
+	 * lattice is populated.
+	 */
+	private void widen() {
+		shift++;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			// Buckets are only merged into the ones before them, so they can be moved in place
+			int size = sizes[bucket], target = bucket >>> 1;
+			long[] moving = codes[bucket];
+			Cell[] cells = bags[bucket];
+			if (target == bucket || size == 0) {
+				continue;
+			}
+			codes[bucket] = null;
+			bags[bucket] = null;
+			sizes[bucket] = 0;
+			for (int ndx = 0; ndx < size; ndx++) {
+				add(target, sizes[target], moving[ndx], cells[ndx]);
+			}
+		}
+	}
+	
+	/**
+	 * Check to see if the code is inside of the box defined by the min and max codes,
+	 * the bits of each axis compare in the same order as the coordinate so they can
+	 * be compared without decoding them.
+	 */
+	private static boolean contains(long code, long min, long max) {
+		for (long mask : AXIS_MASKS) {
+			long axis = code & mask;
+			if (axis < (min & mask) || axis > (max & mask)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Calculate the BIGMIN of the code, the smallest code greater than the one
+	 * given that is inside of the box defined by the min and max codes.
+	 */
+	static long bigMin(long code, long min, long max) {
+		// The bits above the highest one that differs are the same in all three, so start there
+		long bigMin = max;
+		int highest = Math.min(HIGHEST_BIT, 63 - Long.numberOfLeadingZeros((code ^ min) | (code ^ max)));
+		for (int bit = highest; bit >= 0; bit--) {
+			long mask = 1L << bit;
+			boolean c = (code & mask) != 0, lo = (min & mask) != 0, hi = (max & mask) != 0;
+			if (!c && !lo && hi) {
+				// Candidate is in the upper half, continue in the lower half
+				bigMin = setHigh(min, bit);
+				max = setLow(max, bit);
+			} else if (!c && lo && hi) {
+				// The entire box is above the code
+				return min;
+			} else if (c && !lo && !hi) {
+				// The entire box is below the code
+				return bigMin;
+			} else if (c && !lo && hi) {
+				// Continue in the upper half
+				min = setHigh(min, bit);
+			}
+		}
+		return bigMin;
+	}
+
+	/**
+	 * Encode the cell coordinates as a Morton code.
+	 */
+	static long encode(int x, int y, int z) {
+		return (spread(x) << 2) | (spread(y) << 1) | spread(z);
+	}
+
+	/**
+	 * Get the key of the cell that contains the location.
+	 */
+	private long key(int x, int y, int z) {
+		return encode(x / cellSize, y / cellSize, z / cellSize);
+	}
+
+	/**
+	 * Set the bit and clear the lower bits of the same axis, i.e., 1000...
+	 */
+	private static long setHigh(long value, int bit) {
+		long lower = AXIS_MASKS[bit % 3] & ((1L << bit) - 1);
+		return (value | (1L << bit)) & ~lower;
+	}
+
+	/**
+	 * Clear the bit and set the lower bits of the same axis, i.e., 0111...
+	 */
+	private static long setLow(long value, int bit) {
+		long lower = AXIS_MASKS[bit % 3] & ((1L << bit) - 1);
+		return (value & ~(1L << bit)) | lower;
+	}
+
+	/**
+	 * Spread the lower 21 bits of the value so there are two zeros between each bit.
+	 */
+	private static long spread(long value) {
+		value &= 0x1fffffL;
+		value = (value | (value << 32)) & 0x1f00000000ffffL;
+		value = (value | (value << 16)) & 0x1f0000ff0000ffL;
+		value = (value | (value << 8)) & 0x100f00f00f00f00fL;
+		value = (value | (value << 4)) & 0x10c30c30c30c30c3L;
+		value = (value | (value << 2)) & Z_MASK;
+		return value;
+	}
+}
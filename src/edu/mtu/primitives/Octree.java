@@ -0,0 +1,320 @@
+package edu.mtu.primitives;
+
+/**
+ * An incrementally maintained octree over the positive octant of the lattice.
+ * Leaves are split when they exceed their capacity and subtrees are merged back
+ * into a single leaf when enough entities have left them. Since each node tracks
+ * the number of entities below it, searches can prune empty subtrees along with
+ * those that do not intersect the search sphere, which makes the search efficient
+ * regardless of the radius.
+ *
+ * The root is grown as needed so that it contains every entity inserted. Since
+ * entities are always held by the leaf that contains their location, the leaf
+ * of an entity is found by descending the tree instead of being recorded.
+ */
+class Octree {
+
+	// Maximum number of entities in a leaf before it is split
+	private final static int LEAF_CAPACITY = 16;
+
+	// Subtrees with this many entities or fewer are merged into a leaf
+	private final static int MERGE_THRESHOLD = LEAF_CAPACITY / 2;
+
+	// Parameters for sizing bags, this is a point where tuning can take place
+	private final static int INITIAL_BAG_SIZE = 8;
+
+	// The store that holds the locations of the entities
+	private final AgentStore store;
+
+	private Node root;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store The store that holds the locations of the entities.
+	 * @param size The initial size of the root node, rounded up to a power of two.
+	 */
+	public Octree(AgentStore store, int size) {
+		this.store = store;
+		root = new Node(null, 0, 0, 0, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+	}
+
+	/**
+	 * Find the first entity within the radius of the origin.
+	 */
+	public int findFirst(final int origin, final int radius) {
+		return find(root, origin, store.x[origin], store.y[origin], store.z[origin], (long)radius * radius);
+	}
+
+	/**
+	 * Get the number of entities in the tree.
+	 */
+	public int getCount() {
+		return root.count;
+	}
+
+	/**
+	 * Insert the entity into the tree based upon its current location.
+	 */
+	public void insert(int id) {
+		int x = store.x[id], y = store.y[id], z = store.z[id];
+		if (x < 0 || y < 0 || z < 0) {
+			throw new IllegalArgumentException("The lattice does not extend into negative space.");
+		}
+		while (!root.contains(x, y, z)) {
+			grow();
+		}
+		insert(root, id);
+	}
+
+	/**
+	 * Remove the entity from the tree.
+	 */
+	public void remove(int id) {
+		Node leaf = leaf(store.x[id], store.y[id], store.z[id]);
+		leaf.entities.remove(id);
+		for (Node node = leaf; node != null; node = node.parent) {
+			node.count--;
+		}
+		merge(leaf, null);
+	}
+
+	/**
+	 * Update the entity in the tree, the location should already be updated and
+	 * the previous location is given.
+	 */
+	public void update(int id, int px, int py, int pz) {
+		// Nothing to do if we are still in the same leaf
+		Node leaf = leaf(px, py, pz);
+		int x = store.x[id], y = store.y[id], z = store.z[id];
+		if (leaf.contains(x, y, z)) {
+			return;
+		}
+
+		// Walk up the tree until we find a node that contains the new location
+		leaf.entities.remove(id);
+		Node node = leaf;
+		while (node != null && !node.contains(x, y, z)) {
+			node.count--;
+			node = node.parent;
+		}
+
+		if (node == null) {
+			// Outside of the root, so start over
+			insert(id);
+		} else {
+			// Insert from the common ancestor, which already counts the entity
+			node.count--;
+			insert(node, id);
+		}
+
+		// Merge the nodes that were left, note the common ancestor is not included
+		merge(leaf, node);
+	}
+
+	/**
+	 * Search the node for an entity within the radius of the point.
+	 */
+	private int find(Node node, int origin, int x, int y, int z, long limit) {
+		// Prune empty nodes and those outside of the sphere
+		if (node.count == 0 || node.distance(x, y, z) > limit) {
+			return -1;
+		}
+
+		if (node.children == null) {
+			// Check the entities in the leaf
+			int size = node.entities.numObjs;
+			for (int ndx = 0; ndx < size; ndx++) {
+				int id = node.entities.ids[ndx];
+				if (id == origin) {
+					continue;
+				}
+				long dx = x - store.x[id];
+				long dy = y - store.y[id];
+				long dz = z - store.z[id];
+				if (dx*dx + dy*dy + dz*dz <= limit) {
+					return id;
+				}
+			}
+			return -1;
+		}
+
+		// Check the child containing the point first since it is the most likely to have a match
+		int first = node.contains(x, y, z) ? node.childIndex(x, y, z) : 0;
+		int result = find(node.children[first], origin, x, y, z, limit);
+		if (result != -1) {
+			return result;
+		}
+		for (int ndx = 0; ndx < 8; ndx++) {
+			if (ndx == first) {
+				continue;
+			}
+			result = find(node.children[ndx], origin, x, y, z, limit);
+			if (result != -1) {
+				return result;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Double the size of the tree, the current root becomes the lowest child.
+	 */
+	private void grow() {
+		Node node = new Node(null, 0, 0, 0, root.size << 1);
+		node.count = root.count;
+		node.entities = null;
+		node.children = new Node[8];
+		node.children[0] = root;
+		int half = root.size;
+		for (int ndx = 1; ndx < 8; ndx++) {
+			node.children[ndx] = new Node(node, ((ndx & 4) != 0) ? half : 0, ((ndx & 2) != 0) ? half : 0, ((ndx & 1) != 0) ? half : 0, half);
+		}
+		root.parent = node;
+		root = node;
+	}
+
+	/**
+	 * Insert the entity starting from the given node.
+	 */
+	private void insert(Node node, int id) {
+		int x = store.x[id], y = store.y[id], z = store.z[id];
+		while (node.children != null) {
+			node.count++;
+			node = node.children[node.childIndex(x, y, z)];
+		}
+		node.count++;
+		node.entities.add(id);
+		if (node.entities.numObjs > LEAF_CAPACITY && node.size > 1) {
+			split(node);
+		}
+	}
+
+	/**
+	 * Starting at the node, walk up the tree and merge the highest ancestor
+	 * that is at or below the threshold, stopping at the limit.
+	 */
+	private void merge(Node node, Node limit) {
+		Node target = null;
+		for (node = node.parent; node != null && node != limit; node = node.parent) {
+			if (node.count > MERGE_THRESHOLD) {
+				break;
+			}
+			target = node;
+		}
+		if (target == null) {
+			return;
+		}
+
+		// Collect everything in the subtree into the node
+		Cell entities = new Cell(Math.max(INITIAL_BAG_SIZE, target.count));
+		collect(target, entities);
+		target.children = null;
+		target.entities = entities;
+	}
+
+	/**
+	 * Collect all of the entities below the node.
+	 */
+	private void collect(Node node, Cell entities) {
+		if (node.children == null) {
+			entities.addAll(node.entities);
+			return;
+		}
+		for (Node child : node.children) {
+			collect(child, entities);
+		}
+	}
+
+	/**
+	 * Find the leaf that contains the point, the point must be inside of the root.
+	 */
+	private Node leaf(int x, int y, int z) {
+		Node node = root;
+		while (node.children != null) {
+			node = node.children[node.childIndex(x, y, z)];
+		}
+		return node;
+	}
+
+	/**
+	 * Split the leaf into eight children.
+	 */
+	private void split(Node node) {
+		int half = node.size >> 1;
+		node.children = new Node[8];
+		for (int ndx = 0; ndx < 8; ndx++) {
+			node.children[ndx] = new Node(node,
+					node.x + (((ndx & 4) != 0) ? half : 0),
+					node.y + (((ndx & 2) != 0) ? half : 0),
+					node.z + (((ndx & 1) != 0) ? half : 0), half);
+		}
+
+		// Move the entities to the children
+		Cell entities = node.entities;
+		node.entities = null;
+		for (int ndx = 0; ndx < entities.numObjs; ndx++) {
+			int id = entities.ids[ndx];
+			Node child = node.children[node.childIndex(store.x[id], store.y[id], store.z[id])];
+			child.count++;
+			child.entities.add(id);
+		}
+
+		// Split any children that are now too large
+		for (Node child : node.children) {
+			if (child.entities.numObjs > LEAF_CAPACITY && child.size > 1) {
+				split(child);
+			}
+		}
+	}
+
+	/**
+	 * A node in the tree, nodes are either leaves that contain entities or
+	 * branches that contain eight children.
+	 */
+	static class Node {
+		// Origin and length of the node along each axis
+		private final int x, y, z, size;
+
+		private Node parent;
+		private Node[] children;
+		private Cell entities;
+
+		// Number of entities in this node and its children
+		private int count;
+
+		private Node(Node parent, int x, int y, int z, int size) {
+			this.parent = parent;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.size = size;
+			entities = new Cell(INITIAL_BAG_SIZE);
+		}
+
+		/**
+		 * Get the index of the child that contains the point.
+		 */
+		private int childIndex(int px, int py, int pz) {
+			int half = size >> 1;
+			return ((px >= x + half) ? 4 : 0) | ((py >= y + half) ? 2 : 0) | ((pz >= z + half) ? 1 : 0);
+		}
+
+		/**
+		 * Check to see if the point is in this node.
+		 */
+		private boolean contains(int px, int py, int pz) {
+			return (px >= x && px - x < size && py >= y && py - y < size && pz >= z && pz - z < size);
+		}
+
+		/**
+		 * Get the squared distance from the point to the closest point in the node.
+		 */
+		private long distance(int px, int py, int pz) {
+			long dx = Math.max(0, Math.max(x - px, px - (x + size - 1)));
+			long dy = Math.max(0, Math.max(y - py, py - (y + size - 1)));
+			long dz = Math.max(0, Math.max(z - pz, pz - (z + size - 1)));
+			return dx*dx + dy*dy + dz*dz;
+		}
+	}
+}
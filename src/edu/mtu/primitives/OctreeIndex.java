@@ -0,0 +1,80 @@
+package edu.mtu.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+/**
+ * A spatial index that places the entities of each tag in their own octree.
+ * Since the octree adapts to the distribution of the entities, searches are
+ * efficient regardless of how large or small the radius is, which allows for
+ * interaction radii that differ by orders of magnitude.
+ */
+class OctreeIndex implements SpatialIndex {
+
+	// The store that holds the locations of the entities
+	private final AgentStore store;
+
+	// The octree for each tag
+	private Int2ObjectOpenHashMap<Octree> trees;
+	
+	// The initial size of the octrees
+	private int size;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param store The store that holds the locations of the entities.
+	 * @param size The initial size of the octrees, they will grow as needed.
+	 * @param tags The tags that are expected.
+	 */
+	public OctreeIndex(AgentStore store, int size, int[] tags) {
+		this.store = store;
+		this.size = size;
+		trees = new Int2ObjectOpenHashMap<Octree>(tags.length);
+		for (int tag : tags) {
+			trees.put(tag, new Octree(store, size));
+		}
+	}
+
+	@Override
+	public int findFirst(int origin, int tag, long species, int radius) {
+		Octree tree = trees.get(tag);
+		return (tree == null) ? -1 : tree.findFirst(origin, radius);
+	}
+
+	/**
+	 * Always zero since each tree only contains a single tag.
+	 */
+	@Override
+	public long getPresenceHits() {
+		return 0;
+	}
+
+	/**
+	 * Always zero since each tree only contains a single tag.
+	 */
+	@Override
+	public long getPresenceMisses() {
+		return 0;
+	}
+
+	@Override
+	public void insert(int id) {
+		int tag = store.tags[id];
+		Octree tree = trees.get(tag);
+		if (tree == null) {
+			tree = new Octree(store, size);
+			trees.put(tag, tree);
+		}
+		tree.insert(id);
+	}
+
+	@Override
+	public void remove(int id) {
+		trees.get(store.tags[id]).remove(id);
+	}
+
+	@Override
+	public void update(int id, int x, int y, int z) {
+		trees.get(store.tags[id]).update(id, x, y, z);
+	}
+}
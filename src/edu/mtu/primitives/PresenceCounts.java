@@ -0,0 +1,63 @@
+package edu.mtu.primitives;
+
+import java.util.ArrayList;
+
+/**
+ * The number of cells that were scanned during searches because the species
+ * being searched for was present, and that were rejected because it was absent.
+ * Searches count into locals and add them once they are done, and each thread
+ * adds to counts of its own, so the counts are not contended by the threads.
+ * The counts of all of the threads are summed when they are read.
+ */
+class PresenceCounts {
+
+	// The hits and misses of each thread that has added to the counts
+	private final ArrayList<long[]> threads = new ArrayList<long[]>();
+	
+	private final ThreadLocal<long[]> counts = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			long[] value = new long[2];
+			synchronized (threads) {
+				threads.add(value);
+			}
+			return value;
+		}
+	};
+
+	/**
+	 * Add the counts of a search.
+	 */
+	public void add(int hits, int misses) {
+		if (hits == 0 && misses == 0) {
+			return;
+		}
+		long[] value = counts.get();
+		value[0] += hits;
+		value[1] += misses;
+	}
+
+	/**
+	 * Get the number of cells that were scanned because the species was present.
+	 */
+	public long getHits() {
+		return sum(0);
+	}
+
+	/**
+	 * Get the number of cells that were rejected because the species was absent.
+	 */
+	public long getMisses() {
+		return sum(1);
+	}
+
+	private long sum(int ndx) {
+		long total = 0;
+		synchronized (threads) {
+			for (long[] value : threads) {
+				total += value[ndx];
+			}
+		}
+		return total;
+	}
+}
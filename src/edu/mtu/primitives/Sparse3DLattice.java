@@ -1,11 +1,10 @@
 package edu.mtu.primitives;
 
-import java.util.ArrayDeque;
-import java.util.Map;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
 
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import sim.util.Bag;
 
 /**
@@ -13,68 +12,157 @@ import sim.util.Bag;
  * Entities are assumed to only occupy one point in the lattice; however,
  * multiple entities can occupy the same point in space. The volume is 
  * partitioned to optimize distance based searches by avoiding scanning
- * the entire entity list. 
+ * the entire entity list. To this end, entities are also placed in a 
+ * spatial index whose cell size is based upon the largest search radius 
+ * so that searches only need to visit the cells surrounding the entity.
+ * The index is selected when the lattice is created, see IndexType. When
+ * the entities being searched for are common, a geometric search that walks
+ * a precomputed sphere stencil outwards from the entity is used instead.
+ * Every cell also tracks the species present in it so searches can skip
+ * cells without the species they are looking for, see Cell.
  * 
- * In order to ensure that objects are as performant as possible the volume
- * needs to be initialized with what the expected peak usage will be. This 
- * means that there may be a lot of empty space in it, but overall the 
- * execution should be faster since we aren't reallocating the space. 
+ * The state of the entities is held in parallel arrays indexed by the id of
+ * the entity (see AgentStore) and the cells, indices, and tag sets only hold
+ * the ids, so the lattice does not allocate any objects per entity. Ids of 
+ * entities that are removed are reused by the entities that are added.
+ * 
+ * The volume is initialized with the expected initial population and grows
+ * as the population does. Since the maps are rehashed incrementally as they
+ * are updated, growing does not pause the simulation, so there is no need to
+ * allocate space for the peak population up front.
+ * 
+ * The lattice is not thread-safe, a lattice that can be shared by threads is 
+ * created by setting the concurrent flag when it is created.
  * 
  * This approach borrows heavily from the SparseGrid3D class developed by 
  * Sean Luke (GMU) for MASON. 
  */
 public class Sparse3DLattice {
 
-	// Multiplier for setting the initial hash map size
-	private final static int ENTITY_MULTIPLIER = 2;
+	// Number of bits used by each axis when packing coordinates, this limits 
+	// the lattice to 2,097,152 points along each axis
+	private final static int AXIS_BITS = 21;
+	private final static long AXIS_MASK = (1L << AXIS_BITS) - 1;
 	
 	// Parameters for sizing and resizing bags, this is a point where tuning can take place
 	private final static int INITIAL_BAG_SIZE = 8;
 	private final static int LARGE_BAG_RATIO = 4;
 	private final static int MIN_BAG_SIZE = 16;
 	private final static int REPLACEMENT_BAG_RATIO = 2;
+	
+	// Maximum number of empty cells retained for reuse
+	private final static int MAX_POOL_SIZE = 1 << 16;
+	
+	// Parameters for the geometric search, stencils larger than the limit are not built
+	// and probing a point is assumed to cost more than checking a tagged entity
+	private final static int MAX_STENCIL_POINTS = 1 << 20;
+	private final static int STENCIL_PROBE_COST = 4;
 
-	// This map allows us to find where the entity is and colocated entities in O(c)
-	private Map<Entity, LocationAndIndex> entityMap;
+	// The state of the entities, this allows us to find where the entity is and 
+	// colocated entities in O(1)
+	private AgentStore store;
 
-	// This map allows us to search for other entities by probing the space, since we are hashing
-	// the coordinates we really only need that hash value to find entities
-	private Map<Integer, Bag> latticeMap;
+	// This map allows us to search for other entities by probing the space, the coordinates
+	// are packed into a single key so each point in space has its own cell
+	private IncrementalLong2ObjectMap<Cell> latticeMap;
+	
+	// This map allows us to find all of the entities with a given tag
+	private Int2ObjectOpenHashMap<TagSet> tagMap;
+	
+	// Empty cells available for reuse, and how often the pool could supply one
+	private Cell[] pool = new Cell[MAX_POOL_SIZE];
+	private int pooled;
+	private long poolHits, poolMisses;
+	
+	// The presence bit of each tag, based upon its ordinal in the tags provided
+	private Int2LongOpenHashMap speciesMap;
+	
+	// Number of points scanned or rejected based upon the species present
+	private final PresenceCounts presence = new PresenceCounts();
+	
+	// The spatial index used for radius based searches
+	private SpatialIndex index;
+	
+	// The size of the cells in the spatial index
+	private int cellSize;
 	
-	// This map allows us to search the lattice for bags containing the relevant entity
-	private Map<Integer, ArrayDeque<Entity>> tagMap;
+	// The extent of the lattice that has been occupied along each axis
+	private int extentX = 1, extentY = 1, extentZ = 1;
 	
-	// The size of the partitioned hash tables, used for hashing
-	private int allocation;
+	// The sphere stencils for the geometric search, keyed by radius
+	private Int2ObjectOpenHashMap<SphereStencil> stencils;
 		
 	/**
-	 * Private constructor.
+	 * Constructor, use create3DLattice.
 	 */
-	private Sparse3DLattice() {	}
+	Sparse3DLattice() {	}
 		
 	/**
 	 * Create a new sparse 3d lattice structure for use.
 	 * 
-	 * @param maxEntities The maximum number of entities the lattice is expected to contain.
+	 * @param maxEntities The number of entities the lattice is expected to contain initially.
+	 * @param tags The tags of the entities that will be placed in the lattice.
+	 * @param cellSize The size of the search cells, should be the largest expected search radius.
+	 * @return The initialized lattice.
+	 */
+	public static Sparse3DLattice create3DLattice(int maxEntities, int[] tags, int cellSize) {
+		return create3DLattice(maxEntities, tags, cellSize, IndexType.CELL);
+	}
+	
+	/**
+	 * Create a new sparse 3d lattice structure for use.
+	 * 
+	 * @param maxEntities The number of entities the lattice is expected to contain initially.
+	 * @param tags The tags of the entities that will be placed in the lattice.
+	 * @param cellSize The size of the search cells, should be the largest expected search radius.
+	 * @param type The type of spatial index to use for searches.
+	 * @return The initialized lattice.
+	 */
+	public static Sparse3DLattice create3DLattice(int maxEntities, int[] tags, int cellSize, IndexType type) {
+		return create3DLattice(maxEntities, tags, cellSize, type, false);
+	}
+	
+	/**
+	 * Create a new sparse 3d lattice structure for use.
+	 * 
+	 * @param maxEntities The number of entities the lattice is expected to contain initially.
+	 * @param tags The tags of the entities that will be placed in the lattice.
+	 * @param cellSize The size of the search cells, should be the largest expected search radius.
+	 * @param type The type of spatial index to use for searches.
+	 * @param concurrent True if the lattice is going to be shared by threads, false otherwise.
 	 * @return The initialized lattice.
 	 */
-	public static Sparse3DLattice create3DLattice(int maxEntities, int[] tags) {
-		Sparse3DLattice lattice = new Sparse3DLattice();
+	public static Sparse3DLattice create3DLattice(int maxEntities, int[] tags, int cellSize, IndexType type, boolean concurrent) {
+		Sparse3DLattice lattice = concurrent ? new ConcurrentSparse3DLattice() : new Sparse3DLattice();
+		lattice.cellSize = Math.max(1, cellSize);
 		
-		// Assume a uniform distribution of entities
-		lattice.allocation = maxEntities * ENTITY_MULTIPLIER;
-				
-		// Allocate the entity map, note that while we know exactly how many tags we
-		// can expect to see, we need to be pessimistic about the allocation of the 
-		// tagged entity maps
-		lattice.entityMap = new Object2ObjectOpenHashMap<Entity, LocationAndIndex>(lattice.allocation);
-		lattice.latticeMap = new Int2ObjectOpenHashMap<Bag>(lattice.allocation);
-		lattice.tagMap = new Int2ObjectOpenHashMap<ArrayDeque<Entity>>(tags.length);
-		for (int key : tags) {
+		// Allocate the store and maps for the initial population, note that everything grows as needed
+		lattice.store = new AgentStore(maxEntities);
+		switch (type) {
+		case CELL:
+			lattice.index = new CellList(lattice.store, lattice.cellSize);
+			break;
+		case PARTITIONED:
+			lattice.index = new CellList(lattice.store, lattice.cellSize, tags);
+			break;
+		case MORTON:
+			lattice.index = new MortonIndex(lattice.store, lattice.cellSize);
+			break;
+		case OCTREE:
+			lattice.index = new OctreeIndex(lattice.store, lattice.cellSize, tags);
+			break;
+		}
+		lattice.latticeMap = new IncrementalLong2ObjectMap<Cell>(maxEntities);
+		lattice.stencils = new Int2ObjectOpenHashMap<SphereStencil>();
+		lattice.tagMap = new Int2ObjectOpenHashMap<TagSet>(tags.length);
+		lattice.speciesMap = new Int2LongOpenHashMap(tags.length);
+		for (int ndx = 0; ndx < tags.length; ndx++) {
+			int key = tags[ndx];
 			if (lattice.tagMap.containsKey(key)) {
 				throw new IllegalAccessError("Key collision {hash = " + key + "} while allocating the tagMap.");
 			}
-			lattice.tagMap.put(key, new ArrayDeque<Entity>());
+			lattice.tagMap.put(key, new TagSet(lattice.store));
+			lattice.speciesMap.put(key, Cell.bit(ndx));
 		}				
 		return lattice;
 	}
@@ -82,32 +170,36 @@ public class Sparse3DLattice {
 	/**
 	 * Find the first entity with the given tag in the radius from the given entity.
 	 * This method starts by first ensuring any of the given entity type exist followed
-	 * by then checking for entities colocated with it. At that point it will then
-	 * scan all of the entities with the same type to see if one is found within
-	 * the given search radius.
+	 * by then checking for entities colocated with it. At that point it will either
+	 * walk the stencil for the radius, if one was prepared and the tag is dense 
+	 * enough for that to be cheaper, or check the cells of the spatial index that
+	 * overlap with the search radius.
 	 * 
 	 * @param entity to base the search on.
 	 * @param tag to search for.
 	 * @param radius defining the sphere.
 	 * @return The first entity with a matching tag in the sphere, or null.
 	 */
-	public Entity findFirstByTag(final Entity entity, final Integer tag, final int radius) {
+	public Entity findFirstByTag(final Entity entity, final int tag, final int radius) {
 				
 		// Start by peeking to see if there are any entities with the given tag
-		if (tagMap.get(tag).isEmpty()) {
+		TagSet entities = tagMap.get(tag);
+		if (entities.isEmpty()) {
 			return null;
 		}
 		
-		// Get our location and check this bag		
-		LocationAndIndex lai = entityMap.get(entity);
-		int size = lai.colocated.numObjs;
+		// Get our location and check this cell		
+		int id = entity.getAgentId();
+		long species = speciesMap.get(tag);
+		Cell colocated = store.colocated[id];
+		int size = colocated.mayContain(species) ? colocated.numObjs : 0;
 		for (int ndx = 0; ndx < size; ndx++) {
-			Entity checking = (Entity)lai.colocated.objs[ndx];
-			if (checking.equals(entity)) {
+			int checking = colocated.ids[ndx];
+			if (checking == id) {
 				continue;
 			}
-			if (checking.getEntityTypeTag().equals(tag)) {
-				return checking;
+			if (store.tags[checking] == tag) {
+				return store.entities[checking];
 			}
 		}
 		
@@ -116,160 +208,91 @@ public class Sparse3DLattice {
 			return null;
 		}
 		
-		// Calculate how big the search space is for a geometric search
-		// and chose our approach accordingly
-//		int points = (int)((4 / 3) * Math.PI * Math.pow(radius, 3));
-//		if (tagMap.get(tag).size() > points) {
-//			return distanceBasedSearch(entity, tag, radius, lai.location[0], lai.location[1], lai.location[2]);
-//		}
-		return tagBasedSearch(entity, tag, radius, lai.location[0], lai.location[1], lai.location[2]);
+		// Compare how many points a geometric search would probe against the cost of
+		// searching the index and chose our approach accordingly
+		SphereStencil stencil = stencils.get(radius);
+		if (stencil != null && (long)stencil.size() * STENCIL_PROBE_COST < getIndexCost(entities.size(), radius)) {
+			return distanceBasedSearch(entity, tag, stencil, store.x[id], store.y[id], store.z[id]);
+		}
+		int result = index.findFirst(id, tag, species, radius);
+		return (result == -1) ? null : store.entities[result];
 	}
 	
 	/**
-	 * Search for an entity with the given tag, using the tags hash. 
+	 * Estimate the cost of searching the index, this is the number of cells that
+	 * overlap with the sphere along with the number of entities with the tag that
+	 * are expected in them given the density of the tag in the occupied lattice.
 	 */
-	protected Entity tagBasedSearch(final Entity entity, final Integer tag, final int radius, final int x1, final int y1, final int z1) {
-		// Get the last entity so when know when to stop
-		ArrayDeque<Entity> entities = tagMap.get(tag);
-		Entity last = entities.peekLast();
-		
-		// Scan all entities of the given type, since we are using the queue
-		// we need to be aware that it may contain stale entities in it. We
-		// will know if we are looking at one because it will not be present
-		// in the entity map any more.
-		Entity current = null;
-		while (!last.equals(current)) {
-			// Get an entity to check
-			current = entities.pop();
-			
-			// Get it's location, if the location is null then do nothing
-			LocationAndIndex lai = entityMap.get(current);
-			if (lai != null) {
-				// Make sure valid entities are restored
-				entities.add(current);
-				
-				// Press on if we are looking at the parent entity
-				if (entity.equals(current)) {
-					continue;
-				}
-				
-				// Calculate the Euclidean distance, d = sqrt((x1 - x2)^2 + (y1 - y2)^2 + (z1 - z2)^2)
-				int x = x1 - lai.location[0];
-				int y = y1 - lai.location[1];
-				int z = z1 - lai.location[2];
-				double d = Math.sqrt(x*x + y*y + z*z);
-				
-				// Check and return if we are good
-				if (d <= radius) {
-					return current;
-				}
-			}
-		}
-		return null;
+	private double getIndexCost(int count, int radius) {
+		long span = (2L * radius) / cellSize + 2;
+		double searched = Math.pow(span * cellSize, 3);
+		double volume = (double)extentX * extentY * extentZ;
+		return span * span * span + count * Math.min(1.0, searched / volume);
 	}
 	
 	/**
 	 * Search for an entity with the given tag, based upon the geometry of the system. 
 	 * 
-	 * Overall this code is O(n^3) where n is the number of points in the integer sphere,
-	 * but in practice, it may return faster if there is a match close to the origin.
+	 * The points in the stencil are checked in order of their distance from the 
+	 * origin, so the search is O(n) in the number of points in the integer sphere
+	 * and returns the closest match, or null if there is none.
 	 */
-	protected Entity distanceBasedSearch(Entity entity, int tag, int radius, int x1, int y1, int z1) {		
-		// The first search is based upon a cube around the entity's point in 
-		// space, so we need to find how big the cube that can fit in the circle
-		double hypotenuse = Math.sqrt(radius * radius + radius * radius);
-		int limit = radius - (int)Math.sqrt(Math.pow(hypotenuse - radius, 2) / 2);
-			
-		// Check increasing cubes based on the origin until the limit, the step loop
-		// defines the cube's size, while the inner two loops trace the surfaces
-		for (int step = 1; step < limit; step++) {
-			int x2 = x1 + step;
-			for (int y2 = y1 + 1; y2 < y1 + step; y2++) {
-				for (int z2 = z1 + 1; z2 < z1 + step; z2++) {
-					
-					// These next three loops allow us to translate along 
-					// all of the quadrants of the cube
-					for (int xsign = -1; xsign <= 1; xsign += 2) {
-						for (int ysign = -1; ysign <= 1; ysign += 2) {
-							for (int zsign = -1; zsign <= 1; zsign += 2) {
-								
-								// Now we get to actually check the point
-								Entity result = checkPoint(entity, tag, x2 * xsign, y2 * ysign, z2 * zsign);
-								if (result != null) {
-									return result;
-								}			
-							}	
-						}	
-					}
-					
-				}
-			}
-		}
-		
-		// Pre-build the list of points defining the geometry
-		int size = 2 * (radius - limit) + 2;
-		int values[] = new int[size];
-		int index = 0;
-		for (int value = limit; value <= radius; value++) {
-			values[index++] = value;
-			values[index++] = -value;
-		}
+	protected Entity distanceBasedSearch(Entity entity, int tag, SphereStencil stencil, int x1, int y1, int z1) {
+		int[] offsets = stencil.getOffsets();
+		long species = speciesMap.get(tag);
 		
-		// Check the remainder of the sphere, we need to check the points to 
-		// make sure they are part of the sphere though
-		for (int x2 = 0; x2 < size; x2++) {
-			for (int y2 = 0; y2 < size; y2++) {
-				for(int z2 = 0; z2 < size; z2++) {
-					
-					// First we need to know if the point is in the sphere, 
-					// check this by the Euclidean distance
-					int x = x1 - values[x2];
-					int y = y1 - values[y2];
-					int z = z1 - values[z2];
-					double d = Math.sqrt(x*x + y*y + z*z);
-					
-					// It's not, so press on
-					if (d > radius) {
-						continue;
-					}
-					
-					// It is, so check the point
-					Entity result = checkPoint(entity, tag, x2, y2, z2);
-					if (result != null) {
-						return result;
-					}
+		// Note the points scanned and rejected, they are counted once the search is done
+		int hits = 0, misses = 0;
+		try {
+			for (int ndx = 0; ndx < offsets.length; ndx += 3) {
+				// The lattice does not extend into negative space
+				int x = x1 + offsets[ndx], y = y1 + offsets[ndx + 1], z = z1 + offsets[ndx + 2];
+				if (x < 0 || y < 0 || z < 0) {
+					continue;
+				}
+				
+				// Must be something there
+				Cell bag = latticeMap.get(packCoordinates(x, y, z));
+				if (bag == null) {
+					continue;
+				}
+				
+				// Must be the species we are looking for
+				if (!bag.mayContain(species)) {
+					misses++;
+					continue;
+				}
+				hits++;
+				
+				Entity result = checkPoint(entity, tag, bag);
+				if (result != null) {
+					return result;
 				}
 			}
+			
+			// Nothing was found
+			return null;
+		} finally {
+			presence.add(hits, misses);
 		}
-		
-		// Nothing was found
-		return null;
 	}
 
 	/**
-	 * Check that the entity at the given point is a valid match, returns true if it is, false otherwise.
+	 * Check the entities at the point for a valid match, returns null if there is none.
 	 */
-	private Entity checkPoint(Entity entity, int tag, int x, int y, int z) {
-		int hash = hashCoordinates(x, y, z);
-		Bag bag = latticeMap.get(hash);
-		
-		// Must be something there
-		if (bag == null) {
-			return null;
-		}
-		
+	private Entity checkPoint(Entity entity, int tag, Cell bag) {
 		// Check the entities in the location
 		int size = bag.numObjs;
 		for (int ndx = 0; ndx < size; ndx++) {
 			// Can't be the same entity
-			Entity check = (Entity)bag.get(ndx);
-			if (check.equals(entity)) {
+			int check = bag.ids[ndx];
+			if (store.entities[check] == entity) {
 				continue;
 			}
 			
 			// Do the tags match?			
-			if (check.getEntityTypeTag() == tag) {
-				return check;
+			if (store.tags[check] == tag) {
+				return store.entities[check];
 			}
 		}
 		
@@ -278,21 +301,101 @@ public class Sparse3DLattice {
 	}
 
 	/**
-	 * Get all of the objects in the lattice.
+	 * Get all of the objects in the lattice, the list is a copy so the lattice
+	 * may be updated while it is being used.
 	 */
-	public Set<Entity> getAllObjects() {
-		return entityMap.keySet();	
+	public List<Entity> getAllObjects() {
+		List<Entity> objects = new ArrayList<Entity>(store.count());
+		for (int id = 0; id < store.size(); id++) {
+			if (store.entities[id] != null) {
+				objects.add(store.entities[id]);
+			}
+		}
+		return objects;
 	}
 			
 	/**
 	 * Get the all of the objects that share the location of the given object.
 	 * 
 	 * @param object To base the location on.
-	 * @return The bag of objects, or null if the original object was not found.
+	 * @return A bag with a copy of the objects, or null if the original object was not found.
 	 */
 	public Bag getColocatedObjects(final Entity object) {
-		LocationAndIndex lai = entityMap.get(object);
-		return (lai == null) ? null : lai.colocated;
+		int id = object.getAgentId();
+		return store.contains(id, object) ? toBag(store.colocated[id]) : null;
+	}
+	
+	/**
+	 * Get the number of cells and points that were scanned during searches 
+	 * because the species being searched for was present.
+	 */
+	public long getPresenceHits() {
+		return presence.getHits() + index.getPresenceHits();
+	}
+	
+	/**
+	 * Get the number of cells and points that were skipped during searches 
+	 * because the species being searched for was absent, i.e., the scans saved.
+	 */
+	public long getPresenceMisses() {
+		return presence.getMisses() + index.getPresenceMisses();
+	}
+	
+	/**
+	 * Get the squared distance between the two objects, both must be in the lattice.
+	 */
+	public long getDistanceSquared(final Entity one, final Entity two) {
+		return store.distanceSquared(one.getAgentId(), two.getAgentId());
+	}
+	
+	/**
+	 * Get the number of occupied points that are retained by the lattice.
+	 */
+	public int getCellCount() {
+		return latticeMap.size();
+	}
+	
+	/**
+	 * Get the number of new cells that were supplied by the pool.
+	 */
+	public long getPoolHits() {
+		return poolHits;
+	}
+	
+	/**
+	 * Get the number of new cells that had to be allocated since the pool was empty.
+	 */
+	public long getPoolMisses() {
+		return poolMisses;
+	}
+	
+	/**
+	 * Get the number of empty cells in the pool.
+	 */
+	public int getPoolSize() {
+		return pooled;
+	}
+	
+	/**
+	 * Get the size of the cells used for radius based searches.
+	 */
+	public int getCellSize() {
+		return cellSize;
+	}
+	
+	/**
+	 * Build the stencils used by the geometric search for the radii given, radii
+	 * whose stencil would be too large to be worthwhile are ignored.
+	 * 
+	 * @param radii The search radii that are expected to be used.
+	 */
+	public void prepareStencils(final int[] radii) {
+		for (int radius : radii) {
+			if (radius <= 0 || stencils.containsKey(radius) || SphereStencil.volume(radius) > MAX_STENCIL_POINTS) {
+				continue;
+			}
+			stencils.put(radius, new SphereStencil(radius));
+		}
 	}
 	
 	/**
@@ -302,93 +405,95 @@ public class Sparse3DLattice {
 	 * @return The first entity of the given type, or null if there are none.
 	 */
 	public Entity getFirstEntity(final int tag) {
-		// Note the correct tag map based upon the tag
-		ArrayDeque<Entity> entities = tagMap.get(tag);
-		
-		// Stale references can be left behind, so make sure the first entity we peek
-		// still has a valid LAI present
-		LocationAndIndex lai = null;
-		while (lai == null && entities.size() > 0) {
-			lai = entityMap.get(entities.peek());
-			if (lai == null) {
-				entities.pop();
-			}
-		}
-		
-		// Return the first entity in the queue.
-		return entities.peek();
+		TagSet entities = tagMap.get(tag);
+		return entities.isEmpty() ? null : store.entities[entities.get(0)];
+	}
+	
+	/**
+	 * Get the number of entities with the given tag.
+	 */
+	public int getTagCount(final int tag) {
+		TagSet entities = tagMap.get(tag);
+		return (entities == null) ? 0 : entities.size();
 	}
 	
 	/**
 	 * Get the location of the given object.
 	 * 
 	 * @param object To retrieve the location of.
-	 * @return The location as Int3D or null if it does not exist.e
+	 * @return A copy of the location, or null if it does not exist.
 	 */
 	public int[] getObjectLocation(final Entity object) {
-		LocationAndIndex lai = entityMap.get(object);
-		return (lai == null) ? null : lai.location;
+		int id = object.getAgentId();
+		return store.contains(id, object) ? new int[] { store.x[id], store.y[id], store.z[id] } : null;
+	}
+	
+	/**
+	 * Get the location of the given object without allocating.
+	 * 
+	 * @param object To retrieve the location of.
+	 * @param location The array to copy the location into.
+	 * @return The array given, or null if the object does not exist.
+	 */
+	public int[] getObjectLocation(final Entity object, final int[] location) {
+		int id = object.getAgentId();
+		if (!store.contains(id, object)) {
+			return null;
+		}
+		location[0] = store.x[id];
+		location[1] = store.y[id];
+		location[2] = store.z[id];
+		return location;
 	}
 	
 	/**
 	 * Get all of the objects at the given location.
 	 * 
 	 * @param location To retrieve the objects from.
-	 * @return The bag of objects or null.
+	 * @return A bag with a copy of the objects, or null.
 	 */
 	public Bag getObjectsAtLocation(final int[] location) {
-		Integer hash = hashCoordinates(location[0], location[1], location[2]);
-		return latticeMap.get(hash);
+		Cell cell = latticeMap.get(packCoordinates(location[0], location[1], location[2]));
+		return (cell == null) ? null : toBag(cell);
 	}
 	
 	/**
-	 * Hash the x, y, z coordinates provided based upon the internal hash table allocation.
-	 * 
-	 *  Based upon Teschner et al., 2003
+	 * Pack the x, y, z coordinates provided into a single key, since each axis is 
+	 * given its own bits there are no collisions between points in the lattice.
 	 */
-	private Integer hashCoordinates(int x, int y, int z) {
-		final int p1 = 73856093, p2 = 19349663, p3 = 83492791;
-		return (x * p1 ^ y * p2 ^ z * p3) % allocation;
+	static long packCoordinates(int x, int y, int z) {
+		return ((x & AXIS_MASK) << (2 * AXIS_BITS)) | ((y & AXIS_MASK) << AXIS_BITS) | (z & AXIS_MASK);
 	}
 	
 	/**
 	 * Remove the object if it exists. 
 	 * 
 	 * @param object to be removed.
-	 * @return The location of the object, or null if it doesn't exist.
+	 * @return The location of the object.
 	 */
 	public int[] remove(final Entity object) {
 		
-		// Start by removing the object finding out where it is located
-		LocationAndIndex lai = entityMap.remove(object);
-		if (lai == null) {
+		// Start by finding out where the object is located
+		int id = object.getAgentId();
+		if (!store.contains(id, object)) {
 			// This should never actually occur
-			throw new IllegalStateException("Attempted to remove an object not in the entityMap.");
+			throw new IllegalStateException("Attempted to remove an object not in the lattice.");
 		}
+		int[] location = new int[] { store.x[id], store.y[id], store.z[id] };
 				
-		// Remove from the the location lattice
-		Bag bag = lai.colocated;
-		bag.remove(object);
+		// Remove from the tagged entities, the spatial index, and the location lattice
+		tagMap.get(store.tags[id]).remove(id);
+		index.remove(id);
+		vacate(id);
 		
-		// If nothing is left in the bag, clear it's memory
-		int count = bag.numObjs;
-		if (count == 0) {
-			bag.clear();
-		}
-
-		// Shrink oversized bags
-        if (count >= MIN_BAG_SIZE && count * LARGE_BAG_RATIO <= bag.objs.length) {
-        	bag.shrink(count * REPLACEMENT_BAG_RATIO); 
-		}
-		
-		// Return the location, be sure to release memory
-        int[] location = lai.location;
-        lai = null;
-        return location;
+		// Release the id so it can be reused
+		store.release(id);
+		return location;
 	}
 	
 	/**
-	 * Add or update the location of the object in the lattice.
+	 * Add or update the location of the object in the lattice, the location 
+	 * is copied so the array may be reused by the caller.
 	 * 
 	 * @param object to be added or updated.
 	 * @param location of the object in the lattice.
@@ -398,61 +503,98 @@ public class Sparse3DLattice {
 		if (object == null) {
 			throw new IllegalStateException("Attempting to insert null into lattice.");
 		}
-		
-		// Create an empty bag
-		Bag bag = null;		
+		int x = location[0], y = location[1], z = location[2];
+		extentX = Math.max(extentX, x + 1);
+		extentY = Math.max(extentY, y + 1);
+		extentZ = Math.max(extentZ, z + 1);
 		
 		// Check to see if the object already exists
-		LocationAndIndex lai = entityMap.get(object);
-		
-		if (lai == null) {
-			// No location returned, must be a new object
-			lai = new LocationAndIndex();
-			lai.location = location;
-			entityMap.put(object, lai);
-			tagMap.get(object.getEntityTypeTag()).add(object);
+		int id = object.getAgentId();
+		if (!store.contains(id, object)) {
+			// Not in the lattice, must be a new object
+			int tag = object.getEntityTypeTag();
+			id = store.allocate(object, tag, speciesMap.get(tag));
+			store.x[id] = x;
+			store.y[id] = y;
+			store.z[id] = z;
+			tagMap.get(tag).add(id);
+			index.insert(id);
 		} else {
 			// Return if there is no update
-			if (lai.location[0] == location[0] && lai.location[1] == location[1] && lai.location[2] == location[2]) {
+			int px = store.x[id], py = store.y[id], pz = store.z[id];
+			if (px == x && py == y && pz == z) {
 				return;
 			}
 			
 			// We have a location, so we are updating
-			bag = lai.colocated;
-			bag.remove(object);
-			
-			// Clear empty bags
-			int count = bag.numObjs;
-			if (count == 0) {
-				bag.clear();
-			}
-
-			// Shrink oversized bags
-            if (count >= MIN_BAG_SIZE && count * LARGE_BAG_RATIO <= bag.objs.length) {
-            	bag.shrink(count * REPLACEMENT_BAG_RATIO); 
-			}
+			vacate(id);
 			
 			// Update our location
-            lai.location = location;
+			store.x[id] = x;
+			store.y[id] = y;
+			store.z[id] = z;
+			index.update(id, px, py, pz);
 		}
 		
 		// Update the bag in the lattice at the new location
-		Integer hash = hashCoordinates(location[0], location[1], location[2]);
-		bag = latticeMap.get(hash);
+		long key = packCoordinates(x, y, z);
+		Cell bag = latticeMap.get(key);
 		if (bag == null) {
-			bag = new Bag(INITIAL_BAG_SIZE);
-			latticeMap.put(hash, bag);
+			// Recycle a cell if one is available
+			if (pooled > 0) {
+				bag = pool[--pooled];
+				pool[pooled] = null;
+				poolHits++;
+			} else {
+				bag = new Cell(INITIAL_BAG_SIZE);
+				poolMisses++;
+			}
+			latticeMap.put(key, bag);
 		} 
-		bag.add(object);
-		lai.colocated = bag;
+		bag.add(id);
+		bag.species |= store.species(id);
+		store.colocated[id] = bag;
 	}
-			
+	
+	/**
+	 * Copy the entities in the cell to a bag.
+	 */
+	private Bag toBag(Cell cell) {
+		Bag bag = new Bag(cell.numObjs);
+		for (int ndx = 0; ndx < cell.numObjs; ndx++) {
+			bag.add(store.entities[cell.ids[ndx]]);
+		}
+		return bag;
+	}
+	
 	/**
-	 * Helper class that provides the location of the object in the lattice and
-	 * the index of it in a bag.
+	 * Remove the entity from the cell at its current location, empty cells are
+	 * evicted from the lattice and returned to the pool if there is room.
 	 */
-	private static class LocationAndIndex {
-		private Bag colocated;
-		private int[] location;
+	private void vacate(int id) {
+		Cell bag = store.colocated[id];
+		bag.remove(id);
+		store.colocated[id] = null;
+		
+		// Shrink oversized bags
+		int count = bag.numObjs;
+		if (count >= MIN_BAG_SIZE && count * LARGE_BAG_RATIO <= bag.ids.length) {
+			bag.shrink(count * REPLACEMENT_BAG_RATIO); 
+		}
+		
+		// Note the species that are still present and return if the cell is still occupied
+		if (count != 0) {
+			bag.updateSpecies(store);
+			return;
+		}
+		
+		// Evict the empty cell and recycle it
+		latticeMap.remove(packCoordinates(store.x[id], store.y[id], store.z[id]));
+		if (pooled < pool.length) {
+			bag.clear();
+			bag.shrink(INITIAL_BAG_SIZE);
+			bag.species = 0;
+			pool[pooled++] = bag;
+		}
 	}
 }
@@ -0,0 +1,47 @@
+package edu.mtu.primitives;
+
+/**
+ * This interface defines the methods that are needed by the lattice to
+ * perform radius based searches for entities. Entities are referred to
+ * by their id in the store of the lattice, which holds their location.
+ */
+interface SpatialIndex {
+
+	/**
+	 * Find the first entity with the given tag within the radius of the origin.
+	 *
+	 * @param origin of the search, will not be returned.
+	 * @param tag to search for.
+	 * @param species The presence bit of the tag, see Cell.
+	 * @param radius defining the sphere.
+	 * @return The id of the first entity with a matching tag in the sphere, or -1.
+	 */
+	public int findFirst(int origin, int tag, long species, int radius);
+
+	/**
+	 * Get the number of cells that were scanned because the species was present.
+	 */
+	public long getPresenceHits();
+
+	/**
+	 * Get the number of cells that were rejected because the species was absent.
+	 */
+	public long getPresenceMisses();
+
+	/**
+	 * Insert the entity into the index based upon its current location.
+	 */
+	public void insert(int id);
+
+	/**
+	 * Remove the entity from the index, the location of the entity should
+	 * not have changed since it was inserted or updated.
+	 */
+	public void remove(int id);
+
+	/**
+	 * Update the entity in the index, the location of the entity should
+	 * already be updated and the previous location is given.
+	 */
+	public void update(int id, int x, int y, int z);
+}
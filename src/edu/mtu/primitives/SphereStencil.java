@@ -0,0 +1,93 @@
+package edu.mtu.primitives;
+
+/**
+ * The offsets of every integer point in a sphere of a given radius, sorted by
+ * their distance from the origin. Since the offsets are sorted, walking the
+ * stencil from an entity visits the closest points first and the search can
+ * stop at the first match. Stencils are intended to be built once per radius
+ * and reused for every search at that radius.
+ */
+class SphereStencil {
+
+	// Offsets stored as x, y, z triples
+	private final int[] offsets;
+
+	private final int radius;
+	private final int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param radius of the sphere, must be zero or greater.
+	 */
+	public SphereStencil(int radius) {
+		if (radius < 0) {
+			throw new IllegalArgumentException("The radius cannot be negative.");
+		}
+		this.radius = radius;
+
+		// Count the points at each squared distance so they can be placed in order
+		final int limit = radius * radius;
+		int[] counts = new int[limit + 2];
+		for (int x = -radius; x <= radius; x++) {
+			for (int y = -radius; y <= radius; y++) {
+				for (int z = -radius; z <= radius; z++) {
+					int d = x*x + y*y + z*z;
+					if (d <= limit) {
+						counts[d + 1]++;
+					}
+				}
+			}
+		}
+
+		// Convert the counts to the starting position of each distance
+		for (int ndx = 1; ndx < counts.length; ndx++) {
+			counts[ndx] += counts[ndx - 1];
+		}
+		size = counts[limit + 1];
+
+		// Place the offsets, note this is a counting sort on the squared distance
+		offsets = new int[size * 3];
+		for (int x = -radius; x <= radius; x++) {
+			for (int y = -radius; y <= radius; y++) {
+				for (int z = -radius; z <= radius; z++) {
+					int d = x*x + y*y + z*z;
+					if (d <= limit) {
+						int position = counts[d]++ * 3;
+						offsets[position] = x;
+						offsets[position + 1] = y;
+						offsets[position + 2] = z;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the offsets as x, y, z triples sorted by distance.
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * Get the radius of the stencil.
+	 */
+	public int getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Get the number of points in the stencil.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Estimate the number of points in a sphere with the given radius.
+	 */
+	public static long volume(int radius) {
+		return (long)Math.ceil((4.0 / 3.0) * Math.PI * Math.pow(radius, 3));
+	}
+}
@@ -0,0 +1,87 @@
+package edu.mtu.primitives;
+
+/**
+ * A dense set of the ids of the entities that share a tag. The ids are packed at
+ * the front of an array and each entity records its position in the array in the
+ * store, so adding, removing, and checking membership are all O(1). Removal swaps
+ * the last id into the position that was vacated, which means that the order of
+ * the set is not preserved, but the set can be iterated over without modifying it.
+ */
+class TagSet {
+
+	// Parameters for sizing and resizing the set, this is a point where tuning can take place
+	private final static int INITIAL_SIZE = 16;
+	private final static int GROWTH_RATIO = 2;
+
+	private final AgentStore store;
+	private int[] ids;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param store The store that holds the positions of the entities.
+	 */
+	public TagSet(AgentStore store) {
+		this.store = store;
+		ids = new int[INITIAL_SIZE];
+	}
+
+	/**
+	 * Add the entity to the set.
+	 */
+	public void add(int id) {
+		if (size == ids.length) {
+			int[] resized = new int[ids.length * GROWTH_RATIO];
+			System.arraycopy(ids, 0, resized, 0, size);
+			ids = resized;
+		}
+		store.tagIndices[id] = size;
+		ids[size++] = id;
+	}
+
+	/**
+	 * Check to see if the entity is in the set.
+	 */
+	public boolean contains(int id) {
+		int ndx = store.tagIndices[id];
+		return ndx >= 0 && ndx < size && ids[ndx] == id;
+	}
+
+	/**
+	 * Get the id at the given position, valid positions are [0, size).
+	 */
+	public int get(int ndx) {
+		return ids[ndx];
+	}
+
+	/**
+	 * Check to see if the set is empty.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove the entity from the set.
+	 */
+	public void remove(int id) {
+		if (!contains(id)) {
+			return;
+		}
+
+		// Move the last entity into the vacated position
+		int ndx = store.tagIndices[id];
+		int last = ids[--size];
+		ids[ndx] = last;
+		store.tagIndices[last] = ndx;
+		store.tagIndices[id] = -1;
+	}
+
+	/**
+	 * Get the number of entities in the set.
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -10,7 +10,15 @@ public class MoleculeDescription {
 	public boolean hasReactants;
 	public boolean hasDissolvedReactants;
 	
+	// Total rate of the unimolecular reactions, s^-1
+	public double decayRate;
+	
 	// The hash and the interaction radius are coupled with each other
 	public Integer[] reactsWithHash;
 	public int[] interactionRadius;
+	
+	// Number of time steps between visits, and the radius searched on each visit which 
+	// covers the volume of all of the time steps in the interval
+	public int interval = 1;
+	public int[] searchRadius;
 }
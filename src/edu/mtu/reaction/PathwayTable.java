@@ -0,0 +1,89 @@
+package edu.mtu.reaction;
+
+import java.util.List;
+
+import edu.mtu.compound.Species;
+
+/**
+ * The reaction pathways that are open to a pair of reactants, or to a single
+ * reactant, that disproportionates. The tables are built once when the reactions
+ * are loaded and are shared by all of the disproportionating molecules, which
+ * only note the pathways that they have consumed as a bitset.
+ */
+public final class PathwayTable {
+
+	// The maximum number of pathways, one bit for each in the bitset
+	public final static int MaxPathways = Long.SIZE;
+
+	private final BasicReaction[] reactions;
+	private final Species species;
+	private final long all;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param formula of the disproportionating molecule.
+	 * @param reactions that are the pathways, in the order they were loaded.
+	 */
+	PathwayTable(String formula, List<BasicReaction> reactions) {
+		this.reactions = reactions.toArray(new BasicReaction[reactions.size()]);
+		species = Species.get(formula);
+		all = (this.reactions.length == MaxPathways) ? -1L : (1L << this.reactions.length) - 1;
+	}
+
+	/**
+	 * Get the bitset with all of the pathways set.
+	 */
+	public long getAll() {
+		return all;
+	}
+
+	/**
+	 * Get the formula of the disproportionating molecule.
+	 */
+	public String getFormula() {
+		return species.getFormula();
+	}
+
+	/**
+	 * Get the reaction for the given pathway.
+	 */
+	public BasicReaction getReaction(int ndx) {
+		return reactions[ndx];
+	}
+
+	/**
+	 * Get the species of the disproportionating molecule.
+	 */
+	public Species getSpecies() {
+		return species;
+	}
+
+	/**
+	 * Get the bitset of the pathways that are not among the reactions given,
+	 * these are consumed from the start since they cannot take place.
+	 */
+	public long getUnmatched(List<BasicReaction> matched) {
+		long unmatched = all;
+		for (int ndx = 0; ndx < reactions.length; ndx++) {
+			if (matched.contains(reactions[ndx])) {
+				unmatched &= ~(1L << ndx);
+			}
+		}
+		return unmatched;
+	}
+
+	/**
+	 * Check to see if all of the pathways in the bitset have been consumed.
+	 */
+	public boolean isConsumed(long consumed) {
+		return (consumed & all) == all;
+	}
+
+	/**
+	 * Get the number of pathways in the table.
+	 */
+	public int size() {
+		return reactions.length;
+	}
+}
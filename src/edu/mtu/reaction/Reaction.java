@@ -1,6 +1,7 @@
 package edu.mtu.reaction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -21,6 +22,18 @@ import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
 public class Reaction {
 			
 	private static Reaction instance = new Reaction();
+	
+	// The observers of the reactions and the cadence of each one
+	private ReactionObserver[] observers = new ReactionObserver[0];
+	private int[] cadences = new int[0];
+	
+	// The event each thread reuses to describe its reactions
+	private ThreadLocal<ReactionEvent> events = new ThreadLocal<ReactionEvent>() {
+		@Override
+		protected ReactionEvent initialValue() {
+			return new ReactionEvent();
+		}
+	};
 		
 	/**
 	 * Singleton constructor.
@@ -34,6 +47,32 @@ public class Reaction {
 		return instance;
 	}
 	
+	/**
+	 * Register an observer that is informed of the reactions during every time
+	 * step that is a multiple of the cadence given, must not be called while the
+	 * schedule is running.
+	 */
+	public void addObserver(ReactionObserver observer, int cadence) {
+		if (observer == null) {
+			throw new IllegalArgumentException("The observer cannot be null");
+		}
+		if (cadence < 1) {
+			throw new IllegalArgumentException("The cadence must be at least one time step");
+		}
+		observers = Arrays.copyOf(observers, observers.length + 1);
+		cadences = Arrays.copyOf(cadences, cadences.length + 1);
+		observers[observers.length - 1] = observer;
+		cadences[cadences.length - 1] = cadence;
+	}
+	
+	/**
+	 * Remove all of the observers, must not be called while the schedule is running.
+	 */
+	public void clearObservers() {
+		observers = new ReactionObserver[0];
+		cadences = new int[0];
+	}
+	
 	/**
 	 * Conduct the acid dissociation that applies to the given reactant.
 	 * 
@@ -98,78 +137,73 @@ public class Reaction {
 	 */
 	public void disproportionate(DisproportionatingMolecule molecule) {
 		
-		// Local pointer to the reactions
-		BasicReaction[] reactions = molecule.getReactions();
-		int size = reactions.length;
+		// Local pointer to the pathways
+		PathwayTable pathways = molecule.getPathways();
+		long consumed = molecule.getConsumed();
+		int size = pathways.size();
 
-		// Keep track of the odds
+		// Keep track of the odds of the pathways that remain
 		boolean probabilistic = false;
-		ArrayList<Double> reactionOdds = new ArrayList<Double>();
-		
-		// Find the indicies and odds of valid reactions
-		ArrayList<Integer> indicies = new ArrayList<Integer>();
+		double total = 0;
 		for (int ndx = 0; ndx < size; ndx++) {
-			// Press on if the description is null
-			if (reactions[ndx] == null) {
+			// Press on if the pathway is consumed
+			if ((consumed & (1L << ndx)) != 0) {
 				continue;
 			}
 						
 			// Note the odds
-			double odds = reactions[ndx].getReactionRatio();
+			double odds = pathways.getReaction(ndx).getReactionRatio();
 			probabilistic = probabilistic || (odds < 1);
-			reactionOdds.add(odds);			
-			
-			// Note the index for removal
-			indicies.add(ndx);
+			total += odds;
 		}
 				
+		int[] location = Reactor.getInstance().getLocation(molecule);
 		if (probabilistic) {
-			doProbabilistic(molecule, reactions, indicies, reactionOdds);
+			doProbabilistic(molecule, pathways, consumed, total, location);
 		} else {
 			// Process the reactions
-			for (int index : indicies) {
+			for (int ndx = 0; ndx < size; ndx++) {
+				if ((consumed & (1L << ndx)) != 0) {
+					continue;
+				}
+				
 				// Create the products for the reaction
-				Reactor reactor = Reactor.getInstance();
-				int[] location = reactor.getLocation(molecule);
-				for (String formula : reactions[index].getProducts()) {			
+				for (String formula : pathways.getReaction(ndx).getProducts()) {			
 					MoleculeFactory.create(formula, location);
 				}
+				inform(ReactionEvent.Disproportionation, molecule, null, location);
 			}
 		}
 			
-		// Null out the reactions that occurred
-		for (int ndx : indicies) {
-			reactions[ndx] = null;
-		}
+		// Note that the reactions occurred
+		molecule.consume(pathways.getAll());
 	}
 	
-	private void doProbabilistic(DisproportionatingMolecule molecule, BasicReaction[] reactions, ArrayList<Integer> indicies, ArrayList<Double> reactionOdds) {
-		// Add the odds so we can do a single dice roll
-		int size = reactionOdds.size();
-		double value = 0;
-		for (int ndx = 1; ndx < size; ndx++) {
-			value = reactionOdds.get(ndx) + reactionOdds.get(ndx - 1);
-			reactionOdds.set(ndx, value);
-		}
-		if (value != 1.0) {
+	private void doProbabilistic(DisproportionatingMolecule molecule, PathwayTable pathways, long consumed, double total, int[] location) {
+		// A single dice roll is made against the cumulative odds
+		if (total != 1.0) {
 			throw new IllegalArgumentException("Total odds of the reaction '" + molecule.getFormula() + "' cannot exceed 1.0");
 		}
 		double selected = ((XoRoShiRo128PlusRandom)ChemSim.getInstance().getRandom()).nextDoubleFast();
 		
 		// Select the correct reaction
-		double previous = 0.0;
-		for (int ndx = 0; ndx < reactionOdds.size(); ndx++) {
+		double previous = 0.0, cumulative = 0.0;
+		for (int ndx = 0; ndx < pathways.size(); ndx++) {
+			if ((consumed & (1L << ndx)) != 0) {
+				continue;
+			}
 			
 			// If the selected value is in the range, then create the products and return
-			if (previous <= selected && selected <= reactionOdds.get(ndx)) {
-				int[] location = Reactor.getInstance().getLocation(molecule);
-				for (String formula : reactions[indicies.get(ndx)].getProducts()) {			
+			cumulative += pathways.getReaction(ndx).getReactionRatio();
+			if (previous <= selected && selected <= cumulative) {
+				for (String formula : pathways.getReaction(ndx).getProducts()) {			
 					MoleculeFactory.create(formula, location);
 				}
+				inform(ReactionEvent.Disproportionation, molecule, null, location);
 				return;
 			}
 			
-			previous = reactionOdds.get(ndx);
+			previous = cumulative;
 		}
 	}
 	
@@ -201,8 +235,8 @@ public class Reaction {
 			return true;
 		}
 		
-		// Second, see if unimolecular decay needs to take place
-		if (molecule.hasUnimolecular() && unimolecularDecay(molecule)) {
+		// Second, see if the lifetime is up and unimolecular decay needs to take place
+		if (molecule.hasUnimolecular() && molecule.hasDecayed(ChemSim.getSchedule().getTimeStep()) && unimolecularDecay(molecule)) {
 			return true;
 		}
 		
@@ -246,13 +280,11 @@ public class Reaction {
 		// Note our hash once
 		int hash = molecule.getEntityTypeTag();
 		
-		// Get the possible interaction radii
+		// Get the possible interaction radii and the radii to search them over
 		int[] radii = molecule.getInteractionRadii();
+		int[] search = molecule.getSearchRadii();
 
-		// Note the current location
 		Sparse3DLattice grid = Reactor.getInstance().grid;
-		int[] location = grid.getObjectLocation(molecule);
-		int x1 = location[0], y1 = location[1], z1 = location[2];
 		
 		for (int ndx = 0; ndx < hashes.length; ndx++) {
 			// Since a molecule may react with others of the same species
@@ -264,7 +296,7 @@ public class Reaction {
 			}
 			
 			// Find the first that matches
-			Molecule match = (Molecule)grid.findFirstByTag(molecule, hashes[ndx], radii[ndx]);
+			Molecule match = (Molecule)grid.findFirstByTag(molecule, hashes[ndx], search[ndx]);
 			if (match == null) {
 				continue;
 			}
@@ -274,18 +306,18 @@ public class Reaction {
 				continue;
 			}			
 			
-			// Calculate the distance, but return immediately of we occupy the same space
-			location = grid.getObjectLocation(match);
-			int x = x1 - location[0];
-			int y = y1 - location[1];
-			int z = z1 - location[2];
-			if (x == 0 && y == 0 && z == 0) {
-				return processRadius(molecule, match, radii[ndx]);
+			// Calculate the distance, but skip the dice if we occupy the same space
+			long distance = grid.getDistanceSquared(molecule, match);
+			if (distance != 0) {
+				// Roll the dice
+				double d = Math.sqrt(distance);
+				if (random.nextGaussian() >= Erf.erfc(d / search[ndx])) {
+					continue;
+				}
 			}
-			double d = Math.sqrt(x*x + y*y + z*z);
 			
-			// Roll the dice
-			if (random.nextGaussian() < Erf.erfc(d / radii[ndx])) {
+			// Claim the molecule, when running in parallel another may have claimed it first
+			if (match.claim(step)) {
 				return processRadius(molecule, match, radii[ndx]);
 			}
 		}
@@ -309,6 +341,10 @@ public class Reaction {
 		
 		// Check to see if the reaction occurred based upon decay rates
 		double decay = ChemSim.getProperties().getDecayProbability();
+		if (molecule.getInterval() > 1) {
+			// Odds of decaying in any of the time steps since the last visit
+			decay = 1 - Math.pow(1 - decay, molecule.getInterval());
+		}
 		XoRoShiRo128PlusRandom random = (XoRoShiRo128PlusRandom)ChemSim.getInstance().getRandom();
 		if (random.nextDoubleFast() > decay) {
 			return false;
@@ -322,6 +358,7 @@ public class Reaction {
 				MoleculeFactory.create(product, location);
 			}
 		}
+		inform(ReactionEvent.Photolysis, molecule, null, location);
 			
 		// Note that a reaction occurred, molecule will dispose of itself
 		return true;
@@ -367,8 +404,9 @@ public class Reaction {
 		
 		// Add the molecules to the model
 		if (matched.size() > 1) {
-			// Disproportion is occurring
-			MoleculeFactory.create(molecule, reactant, matched, location);
+			// Disproportion is occurring, the pathways that did not match are consumed from the start
+			PathwayTable pathways = ReactionRegistry.getInstance().getPathways(molecule, reactant);
+			MoleculeFactory.create(pathways, pathways.getUnmatched(matched), location);
 		} else {
 			// A standard reaction is occurring
 			MoleculeFactory.create(matched.get(0).getProducts(), location);
@@ -378,11 +416,34 @@ public class Reaction {
 		if (reactant != null) {
 			reactant.dispose();
 		}
+		inform((reactant == null) ? ReactionEvent.Unimolecular : ReactionEvent.Bimolecular, molecule, reactant, location);
 		
 		// The molecule will be dispose itself
 		return true;
 	}
 	
+	/**
+	 * Inform the observers of the time step of the reaction, the event is only
+	 * prepared if at least one of them is observing.
+	 */
+	private void inform(int type, Molecule molecule, Molecule reactant, int[] location) {
+		if (observers.length == 0) {
+			return;
+		}
+		int step = ChemSim.getSchedule().getTimeStep();
+		ReactionEvent event = null;
+		for (int ndx = 0; ndx < observers.length; ndx++) {
+			if (step % cadences[ndx] != 0) {
+				continue;
+			}
+			if (event == null) {
+				event = events.get();
+				event.set(type, step, molecule.getFormula(), (reactant == null) ? null : reactant.getFormula(), location);
+			}
+			observers[ndx].onReaction(event);
+		}
+	}
+	
 	/**
 	 * Perform a unimolecular reaction on the given species.
 	 */
@@ -0,0 +1,73 @@
+package edu.mtu.reaction;
+
+/**
+ * Describes a reaction as it takes place. Each thread reuses a single event, so 
+ * the values are only valid during the call to the observer.
+ */
+public class ReactionEvent {
+	
+	// The kinds of reactions
+	public final static int Bimolecular = 0;
+	public final static int Unimolecular = 1;
+	public final static int Photolysis = 2;
+	public final static int Disproportionation = 3;
+	
+	private int type;
+	private int step;
+	private String formula;
+	private String reactant;
+	private int x, y, z;
+	
+	/**
+	 * Update the event for the next reaction.
+	 */
+	void set(int type, int step, String formula, String reactant, int[] location) {
+		this.type = type;
+		this.step = step;
+		this.formula = formula;
+		this.reactant = reactant;
+		x = location[0];
+		y = location[1];
+		z = location[2];
+	}
+	
+	/**
+	 * Get the kind of reaction, Bimolecular, Unimolecular, Photolysis, or Disproportionation.
+	 */
+	public int getType() {
+		return type;
+	}
+	
+	/**
+	 * Get the time step the reaction took place during.
+	 */
+	public int getStep() {
+		return step;
+	}
+	
+	/**
+	 * Get the formula of the molecule that reacted.
+	 */
+	public String getFormula() {
+		return formula;
+	}
+	
+	/**
+	 * Get the formula of the molecule it reacted with, null if there was none.
+	 */
+	public String getReactant() {
+		return reactant;
+	}
+	
+	public int getX() {
+		return x;
+	}
+	
+	public int getY() {
+		return y;
+	}
+	
+	public int getZ() {
+		return z;
+	}
+}
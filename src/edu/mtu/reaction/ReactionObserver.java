@@ -0,0 +1,19 @@
+package edu.mtu.reaction;
+
+import edu.mtu.simulation.schedule.StepObserver;
+
+/**
+ * A step observer that is also informed of the reactions that take place during
+ * the time steps it observes.
+ */
+public interface ReactionObserver extends StepObserver {
+	
+	/**
+	 * Invoked when a reaction takes place, note that this may be called from any
+	 * of the threads running the time step. The event is reused by the thread for
+	 * the next reaction, so it must not be held on to.
+	 * 
+	 * @param event The reaction that took place.
+	 */
+	public void onReaction(ReactionEvent event);
+}
@@ -9,13 +9,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import javax.activity.InvalidActivityException;
 
 import edu.mtu.compound.DissolvedMolecule;
 import edu.mtu.compound.Molecule;
+import edu.mtu.compound.Species;
 import edu.mtu.parser.Parser;
 import edu.mtu.util.FnvHash;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 /**
  * This singleton contains a look up of the reactions in the simulation. In order to account for 
@@ -31,9 +34,20 @@ public class ReactionRegistry {
 			new DissolvedMolecule("H2O")
 	};
 	
+	// Species whose fastest reaction is within this many orders of magnitude of the
+	// fastest reaction in the registry are fast or medium, the rest are slow
+	private final static int FastDecades = 1;
+	private final static int MediumDecades = 3;
+	
 	private static ReactionRegistry instance = new ReactionRegistry();
 
 	private int[] entityHashes;
+	
+	// The largest interaction radius of the bimolecular reactions
+	private int maxInteractionRadius;
+	
+	// The longest interval between visits of any species
+	private int maxInterval = 1;
 		
 	// Mapping of all of the molecules and the basics of their reactions
 	private Map<String, MoleculeDescription> moleculeDescriptions;
@@ -50,6 +64,9 @@ public class ReactionRegistry {
 	// Unimolecular reactions are [Reactant] -> [Product] + ... + [Product]
 	private Map<String, BasicReaction[]> unimolecular;
 	
+	// Pathways of the reactants that disproportionate, by the ordinals of their species
+	private Long2ObjectOpenHashMap<PathwayTable> pathways;
+	
 	// Track the molecules that appear on the B side of the equation
 	private HashSet<String> bSides;
 	
@@ -125,15 +142,64 @@ public class ReactionRegistry {
 		((ArrayList<BasicReaction>)working.get(key)).add(reaction);
 	}
 	
+	/**
+	 * Assign each of the species to a rate class based upon the fastest of its bimolecular
+	 * reactions, species in the slower classes are visited less often and search the volume
+	 * of all of the time steps in their interval on each visit. Species with dissolved
+	 * reactants react the first time they are visited, so they are always fast unless they
+	 * are only ever on the b-side of the reaction.
+	 * 
+	 * @param fast The number of time steps between visits for the fast species.
+	 * @param medium The number of time steps between visits for the medium species.
+	 * @param slow The number of time steps between visits for the slow species.
+	 * @return Returns a report of the rate classes.
+	 */
+	public String assignRateClasses(int fast, int medium, int slow) {
+		// Find the fastest reaction in the registry
+		double fastest = 0;
+		for (String formula : bimolecular.keySet()) {
+			fastest = Math.max(fastest, getFastestRate(formula));
+		}
+		
+		StringBuilder message = new StringBuilder();
+		maxInterval = 1;
+		for (String formula : new TreeSet<String>(moleculeDescriptions.keySet())) {
+			MoleculeDescription md = moleculeDescriptions.get(formula);
+			double rate = getFastestRate(formula);
+			if ((md.hasDissolvedReactants && !md.isBSide) || rate >= fastest / Math.pow(10, FastDecades)) {
+				md.interval = fast;
+			} else if (rate >= fastest / Math.pow(10, MediumDecades)) {
+				md.interval = medium;
+			} else {
+				md.interval = slow;
+			}
+			maxInterval = Math.max(maxInterval, md.interval);
+			
+			// The search volume grows with the interval, so the radius grows with the cube root
+			md.searchRadius = new int[md.interactionRadius.length];
+			for (int ndx = 0; ndx < md.interactionRadius.length; ndx++) {
+				md.searchRadius[ndx] = (int)Math.ceil(md.interactionRadius[ndx] * Math.cbrt(md.interval));
+				maxInteractionRadius = Math.max(maxInteractionRadius, md.searchRadius[ndx]);
+			}
+			message.append(formula + " (every " + md.interval + " time steps)\n");
+		}
+		
+		return message.toString();
+	}
+	
 	/**
 	 * Clear the current contents of the registry.
 	 */
 	public void clear() {
 		bimolecular = null;
 		bSides = null;
+		pathways = null;
 		photolysis = null;
 		unimolecular = null;
 		moleculeDescriptions = null;
+		maxInteractionRadius = 0;
+		maxInterval = 1;
+		Species.refresh();
 	}
 	
 	/**
@@ -178,6 +244,29 @@ public class ReactionRegistry {
 		return entityHashes;
 	}
 		
+	/**
+	 * Get the largest interaction radius of the bimolecular reactions in the registry.
+	 */
+	public int getMaxInteractionRadius() {
+		return maxInteractionRadius;
+	}
+	
+	/**
+	 * Get the longest interval, in time steps, between visits of any species.
+	 */
+	public int getMaxInterval() {
+		return maxInterval;
+	}
+		
+	/**
+	 * Returns the pathways for the reactants when they disproportionate or null, the second
+	 * reactant is null when the reaction is unimolecular.
+	 */
+	public PathwayTable getPathways(Molecule one, Molecule two) {
+		int ordinal = (two == null) ? -1 : two.getSpecies().getOrdinal();
+		return pathways.get(getPairKey(one.getSpecies().getOrdinal(), ordinal));
+	}
+	
 	/**
 	 * Returns the photolysis products for the chemical species or null.
 	 */
@@ -196,7 +285,7 @@ public class ReactionRegistry {
 	 * Get the molecule description for the given formula.
 	 */
 	public MoleculeDescription getMoleculeDescription(String formula) {
-		return moleculeDescriptions.get(formula);
+		return (moleculeDescriptions == null) ? null : moleculeDescriptions.get(formula);
 	}
 		
 	/**
@@ -262,6 +351,9 @@ public class ReactionRegistry {
 				
 				// Update our b-side
 				bSides.add(reaction.getReactants()[1]);
+				
+				// Note the interaction radius so the search space can be sized
+				maxInteractionRadius = Math.max(maxInteractionRadius, reaction.getInteractionRadius());
 			}
 			if (reaction.getReactionRatio() != 1.0) {
 				message.append(", " + reaction.getReactionRatio());
@@ -281,6 +373,7 @@ public class ReactionRegistry {
 		this.bimolecular = fixMap(bimolecular);
 		this.unimolecular = fixMap(unimolecular);
 		this.acid = Collections.unmodifiableMap(new HashMap<String, AcidDissociation>(acid));
+		buildPathways(bimolecular, unimolecular);
 			
 		// Process the current HashSet of B sides and remove ones that are also
 		// A sides. Double counted ones will be noted by Reaction.bimolecularReaction which 
@@ -291,9 +384,10 @@ public class ReactionRegistry {
 			}
 		}
 				
-		// Build the molecule descriptions
+		// Build the molecule descriptions and update the species that have been seen
 		buildMoleculeDescriptions();
 		buildEntityHash(disproportionationCheck);
+		Species.refresh();
 				
 		// Return the report
 		return message.toString();
@@ -326,6 +420,65 @@ public class ReactionRegistry {
 		return Collections.unmodifiableMap(new HashMap<String, BasicReaction[]>(working));
 	}
 	
+	/**
+	 * Build the pathway tables for the reactants that have more than one reaction with
+	 * each other, the pathways are in the order the reactions were loaded.
+	 */
+	private void buildPathways(Map<String, List<BasicReaction>> bimolecular, Map<String, List<BasicReaction>> unimolecular) throws InvalidActivityException {
+		pathways = new Long2ObjectOpenHashMap<PathwayTable>();
+		for (String reactant : unimolecular.keySet()) {
+			addPathways(reactant, null, unimolecular.get(reactant));
+		}
+		
+		// Each reaction is listed under both of its reactants, so only use the first
+		for (String reactant : bimolecular.keySet()) {
+			HashSet<String> seen = new HashSet<String>();
+			for (BasicReaction reaction : bimolecular.get(reactant)) {
+				String[] reactants = reaction.getReactants();
+				if (!reactants[0].equals(reactant) || !seen.add(reactants[1])) {
+					continue;
+				}
+				List<BasicReaction> working = new ArrayList<BasicReaction>();
+				for (BasicReaction candidate : bimolecular.get(reactant)) {
+					String[] pair = candidate.getReactants();
+					if ((pair[0].equals(reactants[0]) && pair[1].equals(reactants[1])) || 
+						(pair[0].equals(reactants[1]) && pair[1].equals(reactants[0]))) {
+						working.add(candidate);
+					}
+				}
+				addPathways(reactants[0], reactants[1], working);
+			}
+		}
+	}
+	
+	/**
+	 * Add the pathway table for the reactants if they disproportionate.
+	 */
+	private void addPathways(String one, String two, List<BasicReaction> reactions) throws InvalidActivityException {
+		if (reactions.size() < 2) {
+			return;
+		}
+		if (reactions.size() > PathwayTable.MaxPathways) {
+			throw new InvalidActivityException("More than " + PathwayTable.MaxPathways + " pathways for " + one + ((two == null) ? "" : " + " + two));
+		}
+		long key = getPairKey(Species.get(one).getOrdinal(), (two == null) ? -1 : Species.get(two).getOrdinal());
+		if (!pathways.containsKey(key)) {
+			pathways.put(key, new PathwayTable((two == null) ? one : one + " + " + two, reactions));
+		}
+	}
+	
+	/**
+	 * Get the key for the pair of species, the order of the pair does not matter.
+	 */
+	private static long getPairKey(int one, int two) {
+		if (two < one) {
+			int temp = one;
+			one = two;
+			two = temp;
+		}
+		return ((long)one << Integer.SIZE) | (two & 0xFFFFFFFFL);
+	}
+	
 	/**
 	 * Build the array that contains the entity hashes that are present.
 	 */
@@ -376,6 +529,7 @@ public class ReactionRegistry {
 			md.hasUnimolecular = unimolecular.containsKey(formula);			
 			md.hasReactants = (md.hasBimolecular || md.hasPhotolysis || md.hasUnimolecular);
 			md.hasDissolvedReactants = checkDissolvedReactants(formula);
+			md.decayRate = getDecayRate(formula);
 			md.isRadical = formula.startsWith("*") || formula.endsWith("*");
 			md.isBSide = bSides.contains(formula);
 			extractReactants(formula, md);
@@ -402,6 +556,34 @@ public class ReactionRegistry {
 		return false;
 	}
 	
+	/**
+	 * Get the total rate of the unimolecular reactions of the compound, or zero.
+	 */
+	private double getDecayRate(String formula) {
+		double rate = 0;
+		BasicReaction[] rds = unimolecular.get(formula);
+		if (rds != null) {
+			for (BasicReaction rd : rds) {
+				rate += rd.getReactionRate();
+			}
+		}
+		return rate;
+	}
+	
+	/**
+	 * Get the rate of the fastest bimolecular reaction the compound takes part in, or zero.
+	 */
+	private double getFastestRate(String formula) {
+		double rate = 0;
+		BasicReaction[] rds = bimolecular.get(formula);
+		if (rds != null) {
+			for (BasicReaction rd : rds) {
+				rate = Math.max(rate, rd.getReactionRate());
+			}
+		}
+		return rate;
+	}
+	
 	/**
 	 * Get the list of reactants this compound reacts with
 	 */
@@ -410,6 +592,7 @@ public class ReactionRegistry {
 		if (rds == null) {
 			md.reactsWithHash = new Integer[0];
 			md.interactionRadius = new int[0];
+			md.searchRadius = md.interactionRadius;
 			return;
 		}
 		
@@ -434,6 +617,7 @@ public class ReactionRegistry {
 			md.reactsWithHash[ndx] = entities.get(ndx);
 			md.interactionRadius[ndx] = radii.get(ndx);
 		}		
+		md.searchRadius = md.interactionRadius;
 	}
 	
 	private HashSet<String> extractAcid(Map<String, AcidDissociation> reactions) {
@@ -1,15 +1,18 @@
 package edu.mtu.reactor;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import edu.mtu.compound.Molecule;
 import edu.mtu.parser.ChemicalDto;
 import edu.mtu.primitives.Entity;
+import edu.mtu.primitives.IndexType;
 import edu.mtu.primitives.Sparse3DLattice;
+import edu.mtu.reaction.MoleculeDescription;
 import edu.mtu.reaction.ReactionRegistry;
 import edu.mtu.simulation.SimulationProperties;
 import edu.mtu.util.FnvHash;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import net.sourceforge.sizeof.SizeOf;
 import sim.util.Bag;
 
@@ -34,6 +37,12 @@ public class Reactor {
 	public final int[] dimensions;
 	public Sparse3DLattice grid; 
 	
+	// Molecules that have no reaction partners in the reactor, keyed by their species
+	private Int2ObjectOpenHashMap<ArrayList<Molecule>> parked = new Int2ObjectOpenHashMap<ArrayList<Molecule>>();
+	
+	// Molecules that were woken during the time step, unparked at the end of it
+	private ArrayList<Molecule> woken = new ArrayList<Molecule>();
+	
 	/**
 	 * Constructor.
 	 */
@@ -80,7 +89,7 @@ public class Reactor {
 	 * Returns all molecules present in the reactor.
 	 */
 	public Molecule[] getMolecules() {
-		Set<Entity> objects = grid.getAllObjects();
+		List<Entity> objects = grid.getAllObjects();
 		Molecule[] array = new Molecule[objects.size()];
 		objects.toArray(array);
 		return array;
@@ -121,8 +130,26 @@ public class Reactor {
 				throw new IllegalAccessError("Entity hash table is null.");
 			}
 			
+			// The lattice search cells are sized by the largest interaction radius
+			int radius = ReactionRegistry.getInstance().getMaxInteractionRadius();
+			
 			instance = new Reactor(new int[] { dimension, dimension, dimension });
-			instance.grid = Sparse3DLattice.create3DLattice(count, hashes);
+			// The lattice needs to be shared if the time steps are run in parallel
+			IndexType type = SimulationProperties.getInstance().getIndexType();
+			boolean concurrent = SimulationProperties.getInstance().getThreads() > 1;
+			instance.grid = Sparse3DLattice.create3DLattice(count, hashes, radius, type, concurrent);
+			
+			// Prepare the stencils for the geometric search using the interaction radii of the molecules
+			ReactionRegistry registry = ReactionRegistry.getInstance();
+			for (String formula : registry.getEntityList()) {
+				MoleculeDescription md = registry.getMoleculeDescription(formula);
+				if (md != null && md.interactionRadius != null) {
+					instance.grid.prepareStencils(md.interactionRadius);
+				}
+				if (md != null && md.searchRadius != md.interactionRadius) {
+					instance.grid.prepareStencils(md.searchRadius);
+				}
+			}
 			instance.moleculeCount = count;
 			instance.moleculeSize = size;
 			
@@ -140,6 +167,56 @@ public class Reactor {
 		grid.setObjectLocation(molecule, location);
 	}
 	
+	/**
+	 * Note that the molecule is parked until one of the species it reacts with is added,
+	 * returns false if one has been added since the molecule was checked. The check is 
+	 * repeated while holding the lock so a molecule that is added is either seen here, or
+	 * its call to wake finds the molecule parked.
+	 */
+	public synchronized boolean park(Molecule molecule) {
+		if (!molecule.isInert()) {
+			return false;
+		}
+		int tag = molecule.getEntityTypeTag();
+		ArrayList<Molecule> molecules = parked.get(tag);
+		if (molecules == null) {
+			molecules = new ArrayList<Molecule>();
+			parked.put(tag, molecules);
+		}
+		molecules.add(molecule);
+		return true;
+	}
+	
+	/**
+	 * Wake the molecules parked waiting on the species of the molecule given. The molecules
+	 * may be anywhere in the reactor, so they are only unparked at the end of the time step,
+	 * see unparkWoken.
+	 */
+	public synchronized void wake(Molecule molecule) {
+		if (parked.isEmpty() || !molecule.hasBimoleculear()) {
+			return;
+		}
+		for (int hash : molecule.getReactantHashes()) {
+			ArrayList<Molecule> molecules = parked.remove(hash);
+			if (molecules == null) {
+				continue;
+			}
+			woken.addAll(molecules);
+		}
+	}
+	
+	/**
+	 * Return the molecules that were woken during the time step to the schedule, must 
+	 * be called between the time steps since they are moved by the random walk of the
+	 * time steps they were parked for.
+	 */
+	public synchronized void unparkWoken() {
+		for (int ndx = 0; ndx < woken.size(); ndx++) {
+			woken.get(ndx).unpark();
+		}
+		woken.clear();
+	}
+	
 	/**
 	 * Remove the molecule from the grid.
 	 */
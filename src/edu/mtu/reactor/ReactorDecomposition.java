@@ -0,0 +1,79 @@
+package edu.mtu.reactor;
+
+import edu.mtu.compound.Molecule;
+import edu.mtu.simulation.schedule.Decomposition;
+import edu.mtu.simulation.schedule.Steppable;
+
+/**
+ * Divides the reactor into cubic blocks that are assigned to phases in a 3D
+ * checkerboard pattern. The blocks are more than twice the reach of a molecule
+ * across, i.e., the larger of the interaction radius and the distance moved in
+ * a time step, so the molecules of one block can never search or move into the
+ * region used by the molecules of another block in the same phase.
+ */
+public class ReactorDecomposition implements Decomposition {
+
+	// Number of phases needed so no two blocks in a phase are adjacent, one per axis parity
+	private final static int Phases = 8;
+
+	private final Reactor reactor;
+
+	// Length of the edge of a block and the number of blocks along each axis, nm
+	private final int edge;
+	private final int[] counts;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param reactor The reactor to divide.
+	 * @param reach The farthest a molecule can search or move from its location in a time step, nm.
+	 */
+	public ReactorDecomposition(Reactor reactor, int reach) {
+		this.reactor = reactor;
+		edge = 2 * Math.max(1, reach) + 1;
+
+		// Note the location of a molecule is in [0, dimension]
+		counts = new int[3];
+		for (int ndx = 0; ndx < counts.length; ndx++) {
+			counts[ndx] = reactor.dimensions[ndx] / edge + 1;
+		}
+	}
+
+	@Override
+	public int getBlock(Steppable steppable) {
+		if (!(steppable instanceof Molecule)) {
+			return -1;
+		}
+		int[] location = reactor.getLocation((Molecule)steppable);
+		if (location == null) {
+			return -1;
+		}
+		int x = location[0] / edge, y = location[1] / edge, z = location[2] / edge;
+		return (x * counts[1] + y) * counts[2] + z;
+	}
+
+	@Override
+	public int getBlockCount() {
+		return counts[0] * counts[1] * counts[2];
+	}
+
+	/**
+	 * Get the length of the edge of the blocks, nm.
+	 */
+	public int getEdge() {
+		return edge;
+	}
+
+	@Override
+	public int getPhase(int block) {
+		int z = block % counts[2];
+		int y = (block / counts[2]) % counts[1];
+		int x = block / (counts[1] * counts[2]);
+		return ((x & 1) << 2) | ((y & 1) << 1) | (z & 1);
+	}
+
+	@Override
+	public int getPhaseCount() {
+		return Phases;
+	}
+}
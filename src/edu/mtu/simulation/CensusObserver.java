@@ -0,0 +1,30 @@
+package edu.mtu.simulation;
+
+import edu.mtu.simulation.schedule.StepObserver;
+import edu.mtu.simulation.tracking.CensusTracking;
+
+/**
+ * Conducts a census of the molecules at the end of each time step, the census is
+ * slow so this should only be registered when the counts are being validated.
+ */
+public class CensusObserver implements StepObserver {
+
+	private final CensusTracking census;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param census The census to conduct.
+	 */
+	public CensusObserver(CensusTracking census) {
+		this.census = census;
+	}
+	
+	@Override
+	public void beforeStep(int step) { }
+
+	@Override
+	public void afterStep(int step) {
+		census.count();
+	}
+}
@@ -14,15 +14,24 @@ import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
 import edu.mtu.compound.Molecule;
+import edu.mtu.compound.MoleculeFactory;
+import edu.mtu.compound.MoleculePool;
 import edu.mtu.parser.ChemicalDto;
 import edu.mtu.parser.Parser;
 import edu.mtu.reaction.Reaction;
+import edu.mtu.reaction.ReactionObserver;
 import edu.mtu.reaction.ReactionRegistry;
 import edu.mtu.reactor.Reactor;
+import edu.mtu.reactor.ReactorDecomposition;
 import edu.mtu.simulation.decay.DecayFactory;
 import edu.mtu.simulation.decay.DecayModel;
+import edu.mtu.simulation.schedule.CheckerboardExecutor;
+import edu.mtu.simulation.schedule.ExecutorType;
+import edu.mtu.simulation.schedule.ForkJoinExecutor;
 import edu.mtu.simulation.schedule.Schedule;
+import edu.mtu.simulation.schedule.SequentialExecutor;
 import edu.mtu.simulation.schedule.Simulation;
+import edu.mtu.simulation.schedule.StepObserver;
 import edu.mtu.simulation.tracking.CensusTracking;
 import edu.mtu.simulation.tracking.Converter;
 import edu.mtu.simulation.tracking.TrackEnties;
@@ -42,17 +51,33 @@ public class ChemSim implements Simulation {
 	
 	// The properties for the simulation
 	private ModelProperities properties;
-	private int reportInterval;
 	
-	// Entity count tracker for the simulation
+	// The last time step that was completed
+	private int lastStep;
+	
+	// Entity count tracker for the simulation, and the observer reporting it
 	private CensusTracking census;
 	private TrackEnties tracker;	
+	private ReportObserver reporter;
 		
 	/**
 	 * Random number generator that is tied to the simulation. 
 	 */
 	private XoRoShiRo128PlusRandom random;
 	
+	/**
+	 * Random number generator for each thread, the thread that initialized the 
+	 * simulation uses the one above while the others are seeded from it.
+	 */
+	private ThreadLocal<XoRoShiRo128PlusRandom> randoms = new ThreadLocal<XoRoShiRo128PlusRandom>() {
+		@Override
+		protected XoRoShiRo128PlusRandom initialValue() {
+			synchronized (ChemSim.this) {
+				return new XoRoShiRo128PlusRandom(random.nextLong());
+			}
+		}
+	};
+	
 	/**
 	 * Constructor.
 	 */
@@ -67,13 +92,18 @@ public class ChemSim implements Simulation {
 		try {		
 			// Note the properties
 			SimulationProperties simulation = SimulationProperties.getInstance();
-			reportInterval = simulation.getReportInterval();
 			
 			// Import the reactions into the model
 			ReactionRegistry instance = ReactionRegistry.getInstance();
 			instance.clear();
 			String report = instance.load(simulation.getReactionsFileName());
 			
+			// Visit the species with slower reactions less often if requested
+			if (simulation.getMultiRate()) {
+				report += "\nRate classes:\n" + instance.assignRateClasses(properties.getFastPathway(), 
+						properties.getMediumPathway(), properties.getSlowPathway());
+			}
+			
 			// Load the experimental parameters for the model
 			String fileName = SimulationProperties.getInstance().getChemicalsFileName();
 			List<ChemicalDto> compounds = Parser.parseChemicals(fileName);
@@ -86,11 +116,20 @@ public class ChemSim implements Simulation {
 			fileName = simulation.getResultsFileName();
 			tracker = new TrackEnties(fileName, simulation.getOverWriteResults());
 			
+			// Reuse the molecules that are disposed of if requested
+			MoleculePool.getInstance().clear();
+			MoleculePool.getInstance().setEnabled(simulation.getRecycle());
+			
 			// Initialize the model
 			random = new XoRoShiRo128PlusRandom(seed);
+			randoms.set(random);
 			Reactor.initalize(compounds);
 			printHeader(report);
 			
+			// Run the time steps in parallel if we have the threads for it
+			prepareExecutor(simulation.getThreads());
+			schedule.setBlockedOrder(simulation.getBlockedOrder());
+			
 			// Load the compounds
 			initializeModel(compounds);
 			
@@ -116,6 +155,29 @@ public class ChemSim implements Simulation {
 	 */
 	@Override
 	public void start(int timeSteps) {
+		// Stop before the wall-clock budget runs out if one was given
+		SimulationProperties simulation = SimulationProperties.getInstance();
+		if (simulation.getBudget() > 0) {
+			addObserver(new WallClockBudget(schedule, simulation.getBudget(), simulation.getReserve(), timeSteps), 1);
+		}
+		
+		// Molecules woken while parked are unparked between the time steps
+		if (simulation.getLazyDiffusion()) {
+			addObserver(new UnparkObserver(), 1);
+		}
+		
+		// Sample and report the counts, conduct the census if need be, and stop once 
+		// any of the molecules to terminate on are exhausted
+		int interval = simulation.getReportInterval();
+		reporter = new ReportObserver(tracker, simulation.getDeltaT(), interval, timeSteps);
+		addObserver(reporter, interval);
+		if (census != null) {
+			addObserver(new CensusObserver(census), 1);
+		}
+		if (simulation.getTerminationOn().length > 0) {
+			addObserver(new TerminationObserver(schedule, tracker, simulation.getTerminationOn()), 1);
+		}
+		
 		// Note we call step since the scheduler doesn't call until t+1
 		System.out.println("\n" + LocalDateTime.now() + ": Starting simulation...");
 		step(0, timeSteps);
@@ -127,6 +189,10 @@ public class ChemSim implements Simulation {
 	 */
 	@Override
 	public void step(int count, int total) {
+		lastStep = count;
+		
+		// The molecules disposed of that the schedule has dropped can now be reused
+		MoleculePool.getInstance().recycle();
 
 		// Reset the H+ count 
 		tracker.zero("H+");
@@ -135,29 +201,6 @@ public class ChemSim implements Simulation {
 		for (String reactant : ReactionRegistry.getInstance().getAcidDissociationReactants()) {
 			Reaction.getInstance().doAcidDissociation(reactant);
 		}
-								
-		// Update the census if need be
-		if (census != null) {
-			census.count();
-		}
-						
-		// Sample the count and report if need be
-		if (count % reportInterval == 0) {
-			double dt = SimulationProperties.getInstance().getDeltaT();
-			tracker.reset(true, count * dt);
-			System.out.println(LocalDateTime.now() + ": " + (count * dt) + " / "  + count + " of " + total);
-		}
-		
-		// Check to see if we can terminate, but let the simulation warm up first
-		if (count < 10) {
-			return;
-		}
-		for (String molecule : SimulationProperties.getInstance().getTerminationOn()) {
-			if (tracker.getCount(molecule) == 0) {
-				System.out.println(molecule + " is exausted, terminating...");
-				schedule.stop();
-			}
-		}
 	}
 				
 	/**
@@ -165,6 +208,12 @@ public class ChemSim implements Simulation {
 	 */
 	@Override
 	public void finish(boolean terminated) {
+		// Record the counts where the run stopped if they were not reported, unless
+		// the time step was interrupted part way through
+		if (!terminated) {
+			reporter.complete(lastStep);
+		}
+		
 		if (census != null) {
 			census.complete();
 			System.out.print("\nCensus results written to: census.csv");
@@ -183,6 +232,35 @@ public class ChemSim implements Simulation {
 		System.out.println("\n" + LocalDateTime.now());
 	}
 	
+	/**
+	 * Get the number of phases in each time step, either all of the molecules move
+	 * before any react or each molecule reacts and moves in turn.
+	 */
+	@Override
+	public int getPhaseCount() {
+		return SimulationProperties.getInstance().getPhased() ? 2 : 1;
+	}
+	
+	/**
+	 * Register an observer that is invoked on every time step that is a multiple
+	 * of the cadence given, observers of the reactions are also informed of the
+	 * reactions during those time steps. Must not be called while running.
+	 */
+	public void addObserver(StepObserver observer, int cadence) {
+		schedule.addObserver(observer, cadence);
+		if (observer instanceof ReactionObserver) {
+			Reaction.getInstance().addObserver((ReactionObserver)observer, cadence);
+		}
+	}
+	
+	/**
+	 * Remove all of the observers, must not be called while running.
+	 */
+	public void clearObservers() {
+		schedule.clearObservers();
+		Reaction.getInstance().clearObservers();
+	}
+	
 	/**
 	 * Get a reference to the ChemSim singleton.
 	 */
@@ -198,10 +276,10 @@ public class ChemSim implements Simulation {
 	}
 	
 	/**
-	 * Get the random number generator.
+	 * Get the random number generator for the current thread.
 	 */
 	public Random getRandom() {
-		return random;
+		return randoms.get();
 	}
 	
 	/**
@@ -262,10 +340,39 @@ public class ChemSim implements Simulation {
 		for (Molecule molecule : moleclues) {
 			int x = random.nextInt(container[0]), y = random.nextInt(container[1]), z = random.nextInt(container[2]);
 			reactor.grid.setObjectLocation(molecule, new int[] { x, y, z });
-			schedule.insert(molecule);
+			MoleculeFactory.schedule(molecule);
 		}
 	}
 		
+	/**
+	 * Prepare the executor for the schedule, more than one thread either divides the
+	 * reactor into blocks whose molecules are run in parallel, or runs chunks of the
+	 * molecules in parallel.
+	 */
+	private void prepareExecutor(int threads) {
+		if (threads <= 1) {
+			schedule.setExecutor(new SequentialExecutor());
+			return;
+		}
+		
+		// Molecules claim the molecules they react with, so chunks can run anywhere
+		if (SimulationProperties.getInstance().getExecutorType() == ExecutorType.FORKJOIN) {
+			schedule.setExecutor(new ForkJoinExecutor(this, threads));
+			System.out.println(String.format("Threads: %d, Fork/join", threads));
+			return;
+		}
+		
+		// Molecules may search as far as the largest interaction radius or move a full step,
+		// note that the molecules visited less often move the walk of their whole interval
+		ReactionRegistry registry = ReactionRegistry.getInstance();
+		int radius = registry.getMaxInteractionRadius();
+		double dt = SimulationProperties.getInstance().getDeltaT() * Math.sqrt(registry.getMaxInterval());
+		int displacement = Molecule.getMaximumDisplacement(dt);
+		ReactorDecomposition decomposition = new ReactorDecomposition(Reactor.getInstance(), Math.max(radius, displacement));
+		schedule.setExecutor(new CheckerboardExecutor(decomposition, threads));
+		System.out.println(String.format("Threads: %d, Blocks: %,d (%,d nm)", threads, decomposition.getBlockCount(), decomposition.getEdge()));
+	}
+	
 	/**
 	 * Find the proportions for the chemicals input, return the scaling applied.
 	 */
@@ -6,7 +6,10 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 
+import edu.mtu.primitives.IndexType;
 import edu.mtu.reaction.Verifier;
+import edu.mtu.simulation.schedule.ExecutorType;
+import edu.mtu.simulation.schedule.Schedule;
 import edu.mtu.simulation.tracking.Converter;
 import edu.mtu.system.EchoStream;
 import net.sourceforge.sizeof.SizeOf;
@@ -88,6 +91,18 @@ public final class Launcher {
 		// Parse out the arguments
 		for (int ndx = 0; ndx < args.length; ndx+=2) {
 			switch(args[ndx]) {
+			case "-a":
+			case "--blocked":
+				properties.setBlockedOrder(Boolean.parseBoolean(args[ndx + 1]));
+				break;
+			case "-b":
+			case "--budget":
+				int budget = Integer.parseInt(args[ndx + 1]);
+				if (budget < 0) {
+					throw new IllegalArgumentException("The wall-clock budget cannot be negative.");
+				}
+				properties.setBudget(budget);
+				break;
 			case "-c":
 			case "--chemicals":
 				properties.setChemicalsFileName(args[ndx + 1]);
@@ -102,14 +117,65 @@ public final class Launcher {
 				properties.setReactionsFileName(args[ndx + 1]);
 				reactions = true;
 				break;
+			case "-e":
+			case "--executor":
+				properties.setExecutorType(ExecutorType.valueOf(args[ndx + 1].toUpperCase()));
+				break;
+			case "-i":
+			case "--index":
+				properties.setIndexType(IndexType.valueOf(args[ndx + 1].toUpperCase()));
+				break;
+			case "-m":
+			case "--multirate":
+				String[] pathways = args[ndx + 1].split(",");
+				if (pathways.length != 3) {
+					throw new IllegalArgumentException("The multi-rate intervals must be given as fast,medium,slow.");
+				}
+				int fast = Integer.parseInt(pathways[0]), medium = Integer.parseInt(pathways[1]), slow = Integer.parseInt(pathways[2]);
+				if (fast < 1 || medium < 1 || slow < 1) {
+					throw new IllegalArgumentException("The multi-rate intervals must be at least one time step.");
+				}
+				ChemSim.getProperties().setFastPathway(fast);
+				ChemSim.getProperties().setMediumPathway(medium);
+				ChemSim.getProperties().setSlowPathway(slow);
+				properties.setMultiRate(true);
+				break;
 			case "-n":
 			case "--run":
 				iteration = "-" + args[ndx + 1];
 				break;
+			case "-o":
+			case "--recycle":
+				properties.setRecycle(Boolean.parseBoolean(args[ndx + 1]));
+				break;
 			case "-p":
 			case "--padding":
 				properties.setPadding(Integer.parseInt(args[ndx + 1]));
 				break;
+			case "-k":
+			case "--reserve":
+				int reserve = Integer.parseInt(args[ndx + 1]);
+				if (reserve < 0) {
+					throw new IllegalArgumentException("The wall-clock reserve cannot be negative.");
+				}
+				properties.setReserve(reserve);
+				break;
+			case "-j":
+			case "--threads":
+				int threads = Integer.parseInt(args[ndx + 1]);
+				if (threads < 1) {
+					throw new IllegalArgumentException("The number of threads must be at least one.");
+				}
+				properties.setThreads(threads);
+				break;
+			case "-s":
+			case "--phased":
+				properties.setPhased(Boolean.parseBoolean(args[ndx + 1]));
+				break;
+			case "-z":
+			case "--lazy":
+				properties.setLazyDiffusion(Boolean.parseBoolean(args[ndx + 1]));
+				break;
 			case "-l":
 			case "--limit":
 				int limit = Double.valueOf(args[ndx + 1]).intValue();
@@ -158,11 +224,21 @@ public final class Launcher {
 		System.err.printf(format, "-c, --chemicals [file]", "CSV file with compounds present at start of experiment");
 		System.err.printf(format, "-r, --reactions [file]", "CSV file with reactions to be modeled");
 		System.err.println("\nOptional: ");
+		System.err.printf(format, "-a, --blocked [true|false]", "Visit the molecules in blocks of adjacent entries of the schedule, which is faster but correlates the order, default false");
+		System.err.printf(format, "-b, --budget [number]", "The wall-clock budget in seconds, the model stops early to stay within it less the reserve, default none");
 		System.err.printf(format, "", "-dt [number]", "The delta T in seconds, default 1");
+		System.err.printf(format, "-e, --executor [type]", "How the time steps are run on more than one thread (checkerboard, forkjoin), default checkerboard");
+		System.err.printf(format, "-i, --index [type]", "The spatial index to use for searches (cell, partitioned, morton, octree), default cell");
+		System.err.printf(format, "-j, --threads [number]", "The number of threads to run the time steps on, default 1");
+		System.err.printf(format, "-k, --reserve [number]", "The seconds of the wall-clock budget kept back to write out the results, default 10 seconds");
 		System.err.printf(format, "-l, --limit [number]", "The maximum number of molecules to generate at initlization.");
+		System.err.printf(format, "-m, --multirate [f,m,s]", "Visit the fast, medium, and slow reacting species every f, m, and s time steps, e.g., 1,2,3");
 		System.err.printf(format, "-n, --run [number]", "The run number to apply to results files");
+		System.err.printf(format, "-o, --recycle [true|false]", "Reuse the molecules that were disposed of for the products of reactions, default false");
 		System.err.printf(format, "-p, --padding [number]", "The number of seconds to pad the estimated time by, default 900 seconds");
 		System.err.printf(format, "-w, --write [number]", "The report interval to print / save status on, default 60 iterations");
+		System.err.printf(format, "-s, --phased [true|false]", "Move all of the molecules before any react in each time step, default false");
+		System.err.printf(format, "-z, --lazy [true|false]", "Park molecules while none of the species they react with are present, default false");
 		System.err.printf(format, "-t, --terminate [formula]", "Terminate the model when the given molecule has zero entities");
 		System.err.printf(format, "-v, --verify [file] [file]", "Verify the [reactions] and [chemicals] files are properly formatted and has balanced reactions.");
 		System.err.println("\nNOTE:");
@@ -170,13 +246,33 @@ public final class Launcher {
 	}
 	
 	private static class ShutdownHook extends Thread {
+		
+		// Time to wait for the current time step to complete, ms
+		private final static int GracePeriod = 30000;
+		private final static int PollInterval = 100;
+		
 		@Override
 		public void run() {
-			if (ChemSim.getSchedule().stopped()) {
+			Schedule schedule = ChemSim.getSchedule();
+			if (schedule.stopped()) {
+				return;
+			}
+			
+			// Let the time step complete so the results are written out as usual
+			System.err.println("Shutdown hook noted, stopping simulation at the end of the time step...");
+			schedule.stop();
+			try {
+				for (int waited = 0; waited < GracePeriod && !schedule.stopped(); waited += PollInterval) {
+					Thread.sleep(PollInterval);
+				}
+			} catch (InterruptedException ex) {
+				// Fall through to the hard shutdown
+			}
+			if (schedule.stopped()) {
 				return;
 			}
-			System.err.println("Hard shutdown hook noted, terminating simulation!");
-			ChemSim.getSchedule().halt();
+			System.err.println("Time step did not complete, terminating simulation!");
+			schedule.halt();
 		}
 	}
 }
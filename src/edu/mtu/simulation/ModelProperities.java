@@ -8,7 +8,7 @@ import edu.mtu.simulation.decay.DecayModel;
  * execution or between model runs.
  */
 public class ModelProperities {
-	// Default time step durations for disproporting species
+	// Time steps between visits for the species in the fast, medium, and slow rate classes
 	private int fastPathway = 1;
 	private int mediumPathway = 2;
 	private int slowPathway = 3;	
@@ -0,0 +1,122 @@
+package edu.mtu.simulation;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+
+import edu.mtu.compound.MoleculePool;
+import edu.mtu.primitives.Sparse3DLattice;
+import edu.mtu.reactor.Reactor;
+import edu.mtu.simulation.schedule.StepObserver;
+import edu.mtu.simulation.tracking.TrackEnties;
+
+/**
+ * Samples the molecule counts and reports on the model before the time steps 
+ * that are a multiple of the report interval, which is the cadence this observer
+ * should be registered with. The counts are those left by the time steps already
+ * run, so the report before the first time step is of the initial counts.
+ * 
+ * Along with the counts, the memory used by the lattice, how well its searches 
+ * are filtered, and the time spent in the GC since the last report are printed
+ * to the console.
+ */
+public class ReportObserver implements StepObserver {
+
+	private final TrackEnties tracker;
+	private final double deltaT;
+	private final int interval;
+	private final int total;
+	
+	// The last time step that was reported, -1 if none
+	private int lastReport = -1;
+	
+	// Molecules reused and allocated, and the time spent in the GC, as of the last report
+	private long lastHits, lastMisses, lastCollection;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param tracker The tracker to sample the counts with.
+	 * @param deltaT The length of a time step, seconds.
+	 * @param interval The report interval, time steps.
+	 * @param total The total time steps of the run.
+	 */
+	public ReportObserver(TrackEnties tracker, double deltaT, int interval, int total) {
+		this.tracker = tracker;
+		this.deltaT = deltaT;
+		this.interval = interval;
+		this.total = total;
+	}
+	
+	@Override
+	public void beforeStep(int step) {
+		report(step);
+	}
+
+	@Override
+	public void afterStep(int step) { }
+	
+	/**
+	 * Record the counts where the run stopped if they were not reported, the 
+	 * report is only a full one if the step is a multiple of the interval.
+	 * 
+	 * @param step The time steps completed.
+	 */
+	public void complete(int step) {
+		if (step == lastReport) {
+			return;
+		}
+		if (step % interval == 0) {
+			report(step);
+			return;
+		}
+		tracker.reset(true, step * deltaT);
+		lastReport = step;
+		System.out.println(LocalDateTime.now() + ": Stopped at " + (step * deltaT) + " / " + step);
+	}
+	
+	/**
+	 * Sample the counts and print the report for the given time step.
+	 */
+	private void report(int step) {
+		tracker.reset(true, step * deltaT);
+		lastReport = step;
+		System.out.println(LocalDateTime.now() + ": " + (step * deltaT) + " / "  + step + " of " + total);
+		
+		// Report on the lattice so the memory use can be monitored
+		Sparse3DLattice grid = Reactor.getInstance().grid;
+		long requests = grid.getPoolHits() + grid.getPoolMisses();
+		double rate = (requests == 0) ? 0 : (100.0 * grid.getPoolHits()) / requests;
+		System.out.println(String.format("    Cells: %,d, Pooled: %,d, Pool hit rate: %.1f%%", grid.getCellCount(), grid.getPoolSize(), rate));
+		
+		// Report how many of the cells searched were rejected by the species present
+		long searched = grid.getPresenceHits() + grid.getPresenceMisses();
+		rate = (searched == 0) ? 0 : (100.0 * grid.getPresenceMisses()) / searched;
+		System.out.println(String.format("    Cells searched: %,d, Rejected by species present: %.1f%%", searched, rate));
+		reportCollection();
+	}
+	
+	/**
+	 * Report the time spent in the GC since the last report, along with how many of the
+	 * molecules created were reused when they are being recycled. The GC time can be 
+	 * compared against a run without recycling to find the time saved.
+	 */
+	private void reportCollection() {
+		long collection = 0;
+		for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+			collection += Math.max(0, bean.getCollectionTime());
+		}
+		String message = String.format("    GC time: %,d ms", collection - lastCollection);
+		lastCollection = collection;
+		
+		MoleculePool pool = MoleculePool.getInstance();
+		if (pool.isEnabled()) {
+			long hits = pool.getHits() - lastHits, misses = pool.getMisses() - lastMisses;
+			double rate = (hits + misses == 0) ? 0 : (100.0 * hits) / (hits + misses);
+			message += String.format(", Molecules reused: %,d of %,d (%.1f%%)", hits, hits + misses, rate);
+			lastHits = pool.getHits();
+			lastMisses = pool.getMisses();
+		}
+		System.out.println(message);
+	}
+}
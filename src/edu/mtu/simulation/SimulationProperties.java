@@ -1,5 +1,8 @@
 package edu.mtu.simulation;
 
+import edu.mtu.primitives.IndexType;
+import edu.mtu.simulation.schedule.ExecutorType;
+
 /**
  * This class contains various properties related to how the simulation should run 
  * and be managed. Note that the should not change once the application has been
@@ -16,11 +19,39 @@ public class SimulationProperties {
 	// The time, in seconds, to pad the model by (15 minutes default) 
 	private int timePadding = 900;
 	
+	// Wall-clock budget for the run in seconds, zero for none
+	private int budget = 0;
+	
+	// Wall-clock time, in seconds, kept back from the budget to write out the results
+	private int reserve = 10;
+	
 	// How many time steps between reports to console
 	private int reportInterval = 60;	// 60 iterations = 1 minute at default deltaT
 	
 	// Length of a time step in seconds
 	private double deltaT = 1;
+	
+	// Spatial index used by the lattice for searches
+	private IndexType indexType = IndexType.CELL;
+	
+	// Number of threads to run the time steps on, and how they are run
+	private int threads = 1;
+	private ExecutorType executorType = ExecutorType.CHECKERBOARD;
+	
+	// Flag for if species with slower reactions should be visited less often
+	private boolean multiRate = false;
+	
+	// Flag for if molecules without reaction partners should be parked
+	private boolean lazyDiffusion = false;
+	
+	// Flag for if all of the molecules should move before any react
+	private boolean phased = false;
+	
+	// Flag for if the schedule should be visited in blocks of adjacent molecules
+	private boolean blockedOrder = false;
+	
+	// Flag for if molecules that were disposed of should be reused
+	private boolean recycle = false;
 		
 	// List of entities to terminate when zero
 	private String[] terminateOn = new String[0]; 
@@ -51,10 +82,34 @@ public class SimulationProperties {
 		return deltaT;
 	}
 		
+	public ExecutorType getExecutorType() {
+		return executorType;
+	}
+	
+	public IndexType getIndexType() {
+		return indexType;
+	}
+	
 	public String getChemicalsFileName() {
 		return chemicalsFileName;
 	}
 		
+	public boolean getLazyDiffusion() {
+		return lazyDiffusion;
+	}
+	
+	public boolean getBlockedOrder() {
+		return blockedOrder;
+	}
+	
+	public boolean getRecycle() {
+		return recycle;
+	}
+	
+	public boolean getMultiRate() {
+		return multiRate;
+	}
+	
 	public String getMolarFileName() {
 		return molarFileName;
 	}
@@ -67,10 +122,22 @@ public class SimulationProperties {
 		return overWriteResults;
 	}
 	
+	public int getBudget() {
+		return budget;
+	}
+	
 	public int getPadding() {
 		return timePadding;
 	}
 	
+	public boolean getPhased() {
+		return phased;
+	}
+	
+	public int getReserve() {
+		return reserve;
+	}
+	
 	public String getReactionsFileName() {
 		return reactionsFileName;
 	}
@@ -86,11 +153,39 @@ public class SimulationProperties {
 	public String[] getTerminationOn() {
 		return terminateOn;
 	}
+	
+	public int getThreads() {
+		return threads;
+	}
 
+	public void setExecutorType(ExecutorType value) {
+		executorType = value;
+	}
+	
+	public void setIndexType(IndexType value) {
+		indexType = value;
+	}
+	
 	public void setChemicalsFileName(String value) {
 		chemicalsFileName = value;
 	}
 			
+	public void setLazyDiffusion(boolean value) {
+		lazyDiffusion = value;
+	}
+	
+	public void setBlockedOrder(boolean value) {
+		blockedOrder = value;
+	}
+	
+	public void setRecycle(boolean value) {
+		recycle = value;
+	}
+	
+	public void setMultiRate(boolean value) {
+		multiRate = value;
+	}
+	
 	public void setMolarFileName(String value) {
 		molarFileName = value;
 	}
@@ -103,10 +198,22 @@ public class SimulationProperties {
 		initialMolecules = value;
 	}
 	
+	public void setBudget(int value) {
+		budget = value;
+	}
+	
 	public void setPadding(int value) {
 		timePadding = value;
 	}
 	
+	public void setPhased(boolean value) {
+		phased = value;
+	}
+	
+	public void setReserve(int value) {
+		reserve = value;
+	}
+	
 	public void setReactionsFileName(String value) {
 		reactionsFileName = value;
 	}
@@ -123,6 +230,10 @@ public class SimulationProperties {
 		terminateOn = value;
 	}
 	
+	public void setThreads(int value) {
+		threads = value;
+	}
+	
 	public void setDeltaT(double value) {
 		deltaT = value;
 	}
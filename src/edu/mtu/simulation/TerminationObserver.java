@@ -0,0 +1,49 @@
+package edu.mtu.simulation;
+
+import edu.mtu.simulation.schedule.Schedule;
+import edu.mtu.simulation.schedule.StepObserver;
+import edu.mtu.simulation.tracking.TrackEnties;
+
+/**
+ * Stops the schedule at the end of a time step once any of the molecules given
+ * have been exhausted. The simulation is allowed to warm up first, so the check
+ * is only made once the warm up time steps have been run.
+ */
+public class TerminationObserver implements StepObserver {
+
+	// Number of time steps to run before checking
+	private final static int WarmUp = 10;
+	
+	private final Schedule schedule;
+	private final TrackEnties tracker;
+	private final String[] formulas;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param schedule The schedule to stop.
+	 * @param tracker The tracker with the molecule counts.
+	 * @param formulas The formulas of the molecules to terminate on.
+	 */
+	public TerminationObserver(Schedule schedule, TrackEnties tracker, String[] formulas) {
+		this.schedule = schedule;
+		this.tracker = tracker;
+		this.formulas = formulas;
+	}
+	
+	@Override
+	public void beforeStep(int step) { }
+
+	@Override
+	public void afterStep(int step) {
+		if (step + 1 < WarmUp) {
+			return;
+		}
+		for (String formula : formulas) {
+			if (tracker.getCount(formula) == 0) {
+				System.out.println(formula + " is exausted, terminating...");
+				schedule.stop();
+			}
+		}
+	}
+}
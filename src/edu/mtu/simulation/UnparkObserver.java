@@ -0,0 +1,22 @@
+package edu.mtu.simulation;
+
+import edu.mtu.reactor.Reactor;
+import edu.mtu.simulation.schedule.StepObserver;
+
+/**
+ * Returns the molecules that were woken during a time step to the schedule once
+ * every steppable has been run. Unparking moves a molecule by the random walk of
+ * the time steps it was parked for, which may take it anywhere in the reactor, so
+ * it is done on the thread running the schedule instead of by the thread that 
+ * woke the molecule. The molecules are run from the next time step on.
+ */
+public class UnparkObserver implements StepObserver {
+
+	@Override
+	public void beforeStep(int step) { }
+
+	@Override
+	public void afterStep(int step) {
+		Reactor.getInstance().unparkWoken();
+	}
+}
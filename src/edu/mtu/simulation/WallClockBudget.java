@@ -0,0 +1,82 @@
+package edu.mtu.simulation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+
+import edu.mtu.simulation.schedule.Schedule;
+import edu.mtu.simulation.schedule.StepObserver;
+
+/**
+ * Stops the schedule at the end of a time step once the next time step is
+ * predicted to run past the wall-clock budget, less the reserve needed to write
+ * out the results. The budget is measured from the start of the JVM so the time
+ * spent initializing the model counts against it.
+ * 
+ * The time a step takes is predicted from the larger of the average over the run
+ * and a moving average of the recent steps, the steps speed up as the reactants
+ * are used up but can slow down again as products accumulate.
+ */
+public class WallClockBudget implements StepObserver {
+
+	// Weight given to the latest time step in the moving average
+	private final static double Smoothing = 0.1;
+	
+	private final RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+	private final Schedule schedule;
+	
+	// The budget and reserve, ms, and the total time steps of the run
+	private final long budget;
+	private final long reserve;
+	private final int total;
+	
+	// Timing of the time steps, ns
+	private final long started;
+	private long last;
+	private double recent;
+	private int steps;
+		
+	/**
+	 * Constructor.
+	 * 
+	 * @param schedule The schedule to stop.
+	 * @param budget The wall-clock budget for the whole run, seconds.
+	 * @param reserve The time to leave for writing out the results, seconds.
+	 * @param total The total time steps of the run.
+	 */
+	public WallClockBudget(Schedule schedule, int budget, int reserve, int total) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("The budget must be greater than zero.");
+		}
+		this.schedule = schedule;
+		this.budget = budget * 1000L;
+		this.reserve = Math.max(0, reserve) * 1000L;
+		this.total = total;
+		started = System.nanoTime();
+		last = started;
+	}
+	
+	@Override
+	public void beforeStep(int step) { }
+
+	@Override
+	public void afterStep(int step) {
+		// Update the timing
+		long now = System.nanoTime();
+		double duration = now - last;
+		last = now;
+		steps++;
+		recent = (steps == 1) ? duration : recent + Smoothing * (duration - recent);
+		double average = (double)(now - started) / steps;
+		
+		// Stop if the next time step would not finish in time, ms
+		long predicted = (long)Math.ceil(Math.max(recent, average) / 1e6);
+		long elapsed = runtime.getUptime();
+		if (elapsed + predicted + reserve <= budget) {
+			return;
+		}
+		long remaining = (total - step - 1) * predicted / 1000;
+		System.out.println(String.format("Wall-clock budget of %,d sec reached after %,d of %,d time steps, about %,d sec more were needed, stopping...", 
+				budget / 1000, step + 1, total, remaining));
+		schedule.stop();
+	}
+}
@@ -0,0 +1,169 @@
+package edu.mtu.simulation.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the steppables in parallel based upon the blocks they belong to. The phases
+ * are run one after another and the blocks of a phase are divided between the
+ * threads, so steppables in blocks of different phases are never run at the same
+ * time. Within a block the steppables are run in the order given by the schedule.
+ *
+ * Steppables are assigned to their blocks at the start of each time step, so the
+ * steppables that move between blocks are picked up by their new block in the
+ * next time step.
+ */
+public class CheckerboardExecutor implements StepExecutor {
+
+	private final Decomposition decomposition;
+	private final ExecutorService pool;
+
+	// The blocks in each phase
+	private final int[][] phases;
+
+	// The steppables in each block, reused each time step
+	private final List<ArrayList<Steppable>> blocks;
+
+	// One worker per thread, the workers claim the blocks of the current phase
+	private final List<Worker> workers;
+	private final AtomicInteger next = new AtomicInteger();
+	private int[] phase;
+
+	// Time step and the phase of it being run, not to be confused with the phases of the blocks
+	private int timeStep;
+	private int stepPhase;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param decomposition The decomposition to assign the steppables to blocks with.
+	 * @param threads The number of threads to run the blocks on.
+	 */
+	public CheckerboardExecutor(Decomposition decomposition, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is required.");
+		}
+		this.decomposition = decomposition;
+
+		// Note the blocks in each phase
+		int[] counts = new int[decomposition.getPhaseCount()];
+		for (int block = 0; block < decomposition.getBlockCount(); block++) {
+			counts[decomposition.getPhase(block)]++;
+		}
+		phases = new int[counts.length][];
+		for (int ndx = 0; ndx < counts.length; ndx++) {
+			phases[ndx] = new int[counts[ndx]];
+			counts[ndx] = 0;
+		}
+		for (int block = 0; block < decomposition.getBlockCount(); block++) {
+			int ndx = decomposition.getPhase(block);
+			phases[ndx][counts[ndx]++] = block;
+		}
+
+		blocks = new ArrayList<ArrayList<Steppable>>(decomposition.getBlockCount());
+		for (int block = 0; block < decomposition.getBlockCount(); block++) {
+			blocks.add(new ArrayList<Steppable>());
+		}
+		workers = new ArrayList<Worker>(threads);
+		for (int ndx = 0; ndx < threads; ndx++) {
+			workers.add(new Worker());
+		}
+
+		// Daemon threads so the pool does not keep the application running
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "checkerboard-" + count++);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public void execute(Steppable[] steppables, Permutation order, int timeStep, int stepPhase) {
+		this.timeStep = timeStep;
+		this.stepPhase = stepPhase;
+
+		// Assign the steppables that are due to their blocks, those without a block are run now
+		int size = order.size();
+		for (int ndx = 0; ndx < size; ndx++) {
+			Steppable steppable = steppables[order.get(ndx)];
+			if (!steppable.isActive() || !steppable.isDue(timeStep)) {
+				continue;
+			}
+			int block = decomposition.getBlock(steppable);
+			if (block == -1) {
+				steppable.doPhase(stepPhase, timeStep);
+				continue;
+			}
+			blocks.get(block).add(steppable);
+		}
+
+		// Run the phases in order, waiting for each one to complete
+		try {
+			for (int[] members : phases) {
+				if (members.length == 0) {
+					continue;
+				}
+				phase = members;
+				next.set(0);
+				for (Future<Void> future : pool.invokeAll(workers)) {
+					future.get();
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the time step.", ex);
+		} catch (ExecutionException ex) {
+			// Pass along the failure of the steppable
+			if (ex.getCause() instanceof RuntimeException) {
+				throw (RuntimeException)ex.getCause();
+			}
+			if (ex.getCause() instanceof Error) {
+				throw (Error)ex.getCause();
+			}
+			throw new IllegalStateException(ex.getCause());
+		} finally {
+			for (ArrayList<Steppable> block : blocks) {
+				block.clear();
+			}
+		}
+	}
+
+	/**
+	 * Stop the threads used to run the blocks.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Claims the blocks of the current phase and runs their steppables.
+	 */
+	private class Worker implements Callable<Void> {
+		@Override
+		public Void call() {
+			int ndx;
+			while ((ndx = next.getAndIncrement()) < phase.length) {
+				ArrayList<Steppable> steppables = blocks.get(phase[ndx]);
+				for (int position = 0; position < steppables.size(); position++) {
+					Steppable steppable = steppables.get(position);
+					if (steppable.isActive()) {
+						steppable.doPhase(stepPhase, timeStep);
+					}
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package edu.mtu.simulation.schedule;
+
+/**
+ * Divides the steppables in the schedule into blocks that can be run in parallel. 
+ * Each block belongs to a phase and the blocks in a phase must be independent of
+ * each other, i.e., the steppables in one block cannot affect the steppables in
+ * another block of the same phase.
+ */
+public interface Decomposition {
+
+	/**
+	 * Get the block that the steppable belongs to, or -1 if the steppable needs to 
+	 * be run on its own. The block is only expected to be valid for the current 
+	 * time step.
+	 */
+	public int getBlock(Steppable steppable);
+	
+	/**
+	 * Get the number of blocks, valid blocks are [0, count).
+	 */
+	public int getBlockCount();
+	
+	/**
+	 * Get the phase that the block is run in.
+	 */
+	public int getPhase(int block);
+	
+	/**
+	 * Get the number of phases, valid phases are [0, count).
+	 */
+	public int getPhaseCount();
+}
@@ -0,0 +1,18 @@
+package edu.mtu.simulation.schedule;
+
+/**
+ * The types of executors that can be used to run the time steps on more than one thread.
+ */
+public enum ExecutorType {
+	/**
+	 * Blocks of the reactor are run in a checkerboard pattern so steppables that
+	 * are near each other are never run at the same time.
+	 */
+	CHECKERBOARD,
+	
+	/**
+	 * Chunks of the order are run on a work-stealing pool, steppables claim the
+	 * steppables they interact with atomically.
+	 */
+	FORKJOIN
+}
@@ -0,0 +1,96 @@
+package edu.mtu.simulation.schedule;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the steppables in parallel by splitting the order of the time step into
+ * chunks that are run on a work-stealing pool. Unlike the checkerboard there is
+ * no spatial decomposition, so steppables that interact need to claim each other
+ * atomically and any shared state needs to be safe for concurrent use.
+ *
+ * Each chunk is run with its own random number stream, the simulation random for
+ * the thread running the chunk is seeded from the time step and the chunk before
+ * the chunk is run.
+ */
+public class ForkJoinExecutor implements StepExecutor {
+
+	// Number of positions in a chunk, this is a point where tuning can take place
+	private final static int ChunkSize = 4096;
+
+	// Used to give each chunk its own seed
+	private final static long ChunkKey = 0x9E3779B97F4A7C15L;
+
+	private final Simulation simulation;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param simulation The simulation that provides the random number generator of each thread.
+	 * @param threads The number of threads to run the chunks on.
+	 */
+	public ForkJoinExecutor(Simulation simulation, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is required.");
+		}
+		this.simulation = simulation;
+		pool = new ForkJoinPool(threads);
+	}
+
+	@Override
+	public void execute(Steppable[] steppables, Permutation order, int timeStep, int phase) {
+		long seed = simulation.getRandom().nextLong();
+		pool.invoke(new Chunk(steppables, order, timeStep, phase, seed, 0, order.size()));
+	}
+
+	/**
+	 * Stop the threads used to run the chunks.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Runs the positions [start, end) of the order, splitting them in half until
+	 * they are no larger than a chunk. Splits fall on the chunk boundaries so the
+	 * chunks, and their seeds, do not depend upon how the work was divided.
+	 */
+	@SuppressWarnings("serial")
+	private class Chunk extends RecursiveAction {
+		private final Steppable[] steppables;
+		private final Permutation order;
+		private final int timeStep, phase;
+		private final long seed;
+		private final int start, end;
+
+		public Chunk(Steppable[] steppables, Permutation order, int timeStep, int phase, long seed, int start, int end) {
+			this.steppables = steppables;
+			this.order = order;
+			this.timeStep = timeStep;
+			this.phase = phase;
+			this.seed = seed;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start > ChunkSize) {
+				int chunks = (end - start + ChunkSize - 1) / ChunkSize;
+				int middle = start + (chunks / 2) * ChunkSize;
+				invokeAll(new Chunk(steppables, order, timeStep, phase, seed, start, middle),
+						  new Chunk(steppables, order, timeStep, phase, seed, middle, end));
+				return;
+			}
+
+			simulation.getRandom().setSeed(seed + (start / ChunkSize + 1) * ChunkKey);
+			for (int ndx = start; ndx < end; ndx++) {
+				Steppable steppable = steppables[order.get(ndx)];
+				if (steppable.isActive() && steppable.isDue(timeStep)) {
+					steppable.doPhase(phase, timeStep);
+				}
+			}
+		}
+	}
+}
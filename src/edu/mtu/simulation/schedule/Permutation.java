@@ -0,0 +1,179 @@
+package edu.mtu.simulation.schedule;
+
+/**
+ * A pseudo-random permutation of the indices [0, size) that is computed on demand
+ * instead of being stored. By default the whole range is permuted by a keyed 
+ * bijection over the power of two that covers it, each round of which multiplies
+ * by an odd key and folds the high bits into the low ones. Positions that map 
+ * outside of the range are mapped again until they fall inside of it (cycle 
+ * walking), which preserves the bijection. The keys only select from a family of
+ * these bijections, so the order is not drawn uniformly from all of the orderings;
+ * the tests only check that neither the position of an index nor the order of a
+ * pair of indices shows a bias.
+ * 
+ * Visiting the indices in a random order defeats the caches once the schedule no
+ * longer fits in them, so the blocked mode may be requested instead. The indices
+ * are grouped into blocks of adjacent indices, the order of the blocks is permuted
+ * and the indices within each block are permuted with a key of their own. Finally,
+ * the indices are rotated by a random offset, this ensures the last block, which 
+ * is only partially filled, does not always fall on the same indices. Each block
+ * only touches a small region of memory, but the indices in a block are always
+ * visited together, so the position of an index is correlated with the positions
+ * of its neighbors in the schedule.
+ *
+ * A new permutation only needs new keys, so the order of the schedule can be
+ * randomized every time step in O(1) memory and without moving the steppables.
+ */
+public class Permutation {
+
+	// Parameters for the bijection, this is a point where tuning can take place.
+	// Very small domains do not mix well, so domains are never smaller than 2^8
+	private final static int Rounds = 4;
+	private final static int MinBits = 8;
+
+	// Number of adjacent indices in each block, as a power of two
+	private final static int BlockBits = 8;
+	private final static int BlockMask = (1 << BlockBits) - 1;
+	private final static int BlockShift = (BlockBits + 1) / 2;
+
+	// Used to give each block its own key
+	private final static long BlockKey = 0x9E3779B97F4A7C15L;
+
+	// The keys for the order of the range, or of the blocks, and within the blocks, the multipliers are always odd
+	private final long[] multipliers = new long[Rounds];
+	private final long[] addends = new long[Rounds];
+	private final long[] blockMultipliers = new long[Rounds];
+	private final long[] blockAddends = new long[Rounds];
+
+	// Flag for if the indices are visited in blocks
+	private final boolean blocked;
+	
+	// Domain of the range, or of the block order
+	private long mask;
+	private int shift;
+
+	private int blocks;
+	private int offset;
+	private int size;
+
+	/**
+	 * Constructor, the whole range is permuted.
+	 */
+	public Permutation() {
+		this(false);
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param blocked True if the indices should be visited in blocks of adjacent indices.
+	 */
+	public Permutation(boolean blocked) {
+		this.blocked = blocked;
+	}
+	
+	/**
+	 * Prepare a new permutation of [0, size) using the given seed.
+	 */
+	public void reset(int size, long seed) {
+		if (size < 0) {
+			throw new IllegalArgumentException("The size cannot be negative.");
+		}
+		this.size = size;
+		blocks = (int)(((long)size + BlockMask) >>> BlockBits);
+
+		// Find the power of two that covers the range or the blocks
+		int domain = blocked ? blocks : size;
+		int bits = Math.max(MinBits, 32 - Integer.numberOfLeadingZeros(domain - 1));
+		mask = (1L << bits) - 1;
+		shift = (bits + 1) / 2;
+
+		// Derive the keys from the seed
+		for (int ndx = 0; ndx < Rounds; ndx++) {
+			seed = mix(seed);
+			multipliers[ndx] = seed | 1;
+			seed = mix(seed);
+			addends[ndx] = seed;
+			seed = mix(seed);
+			blockMultipliers[ndx] = seed | 1;
+			seed = mix(seed);
+			blockAddends[ndx] = seed;
+		}
+		offset = (size == 0 || !blocked) ? 0 : (int)((mix(seed) >>> 1) % size);
+	}
+
+	/**
+	 * Get the index at the given position of the permutation, valid positions are [0, size).
+	 */
+	public int get(int position) {
+		long value = position;
+		if (!blocked) {
+			do {
+				value = bijection(value);
+			} while (value >= size);
+			return (int)value;
+		}
+		
+		do {
+			value = permute(value);
+		} while (value >= size);
+		value += offset;
+		return (int)((value >= size) ? value - size : value);
+	}
+
+	/**
+	 * Check to see if the indices are visited in blocks of adjacent indices.
+	 */
+	public boolean isBlocked() {
+		return blocked;
+	}
+	
+	/**
+	 * Get the number of indices in the permutation.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Apply the keyed bijection over the power of two that covers the range, or the blocks.
+	 */
+	private long bijection(long value) {
+		for (int ndx = 0; ndx < Rounds; ndx++) {
+			value = (value * multipliers[ndx] + addends[ndx]) & mask;
+			value ^= value >>> shift;
+		}
+		return value;
+	}
+	
+	/**
+	 * Map the value to its position in the blocks, this is a bijection over all of the blocks.
+	 */
+	private long permute(long value) {
+		// Find the block to visit
+		long block = value >>> BlockBits;
+		do {
+			block = bijection(block);
+		} while (block >= blocks);
+
+		// Find the index within the block
+		long key = block * BlockKey;
+		long offset = value & BlockMask;
+		for (int ndx = 0; ndx < Rounds; ndx++) {
+			offset = (offset * blockMultipliers[ndx] + (blockAddends[ndx] ^ key)) & BlockMask;
+			offset ^= offset >>> BlockShift;
+		}
+		return (block << BlockBits) | offset;
+	}
+
+	/**
+	 * Scramble the seed using the SplitMix64 step, this ensures that similar
+	 * seeds still produce unrelated keys.
+	 */
+	private static long mix(long seed) {
+		long value = seed + 0x9E3779B97F4A7C15L;
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
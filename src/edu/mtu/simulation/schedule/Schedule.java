@@ -1,46 +1,92 @@
 package edu.mtu.simulation.schedule;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 /**
- * The schedule is based upon a ring buffer, but modified so that there is always
- * a marker node that ensures a callback is made to the simulation.  
+ * The schedule runs the steppables for each time step and then calls back to the
+ * simulation. How the steppables in a time step are run is determined by the 
+ * executor, by default they are run one at a time on the calling thread.
+ * 
+ * The steppables are held in two flat arrays, the current time step and the 
+ * steppables inserted for the next one. Once a time step is complete the current
+ * array is compacted in place to drop the steppables that are no longer active
+ * and the inserted steppables are appended to it, so the steppables that carry
+ * over are never copied between collections.
+ * 
+ * A time step may be divided into phases by the simulation, in which case every
+ * steppable is run for one phase before any steppable is run for the next one.
+ * 
+ * To remove any bias due to the activation order, the steppables are run in a
+ * new pseudo-random order every time step. The order is a permutation that is
+ * computed as the steppables are visited, so the arrays are never shuffled.
+ * 
+ * Steppables that have nothing to do until some later time step may be held in
+ * a calendar keyed by that time step instead, they join the arrays when it comes.
+ * 
+ * Observers may be registered to be invoked before and after the time steps, 
+ * each at its own cadence.
  */
 public class Schedule {
 		
-	// How many steps to go before shuffling, higher than 1 will allow 
-	// some bias in exchange for faster runs
-	public final static int ShuffleSteps = 10;
-	
 	// Flags to indicate shutdown
-	private boolean halt;				// Shut down now
-	private boolean stopping;			// Shut down at end of time step
-	private boolean stopped;			// Schedule is complete
+	private volatile boolean halt;		// Shut down now
+	private volatile boolean stopping;	// Shut down at end of time step
+	private volatile boolean stopped;	// Schedule is complete
 	
-	// Current time step of the schedule
+	// Current time step of the schedule, and the one inserted steppables are first run on
 	private int timeStep;
+	private int upcoming;
 	
 	// Pointer to the simulation
 	private Simulation simulation;
 	
-	private ArrayDeque<Steppable> schedule;
-	private ArrayList<Steppable> pending;
+	// Parameters for sizing the arrays, this is a point where tuning can take place
+	private final static int InitialSize = 1024;
+	private final static int GrowthRatio = 2;
+	
+	// The steppables in the current time step, and those inserted for the next
+	private Steppable[] current;
+	private Steppable[] next;
+	private int currentSize, nextSize;
+	
+	// Steppables held until the time step they are first run on
+	private Int2ObjectOpenHashMap<ArrayList<Steppable>> calendar;
+	
+	// Number of steppables that are active
+	private AtomicInteger active;
+	
+	// The order to run the steppables in the current time step
+	private Permutation order;
+	
+	// Runs the steppables in each time step
+	private StepExecutor executor;
+	
+	// The observers and the cadence of each one
+	private StepObserver[] observers = new StepObserver[0];
+	private int[] cadences = new int[0];
 		
 	/**
 	 * Constructor.
 	 */
 	public Schedule() {
-		schedule = new ArrayDeque<Steppable>();
-		pending = new ArrayList<Steppable>();
+		executor = new SequentialExecutor();
+		current = new Steppable[InitialSize];
+		next = new Steppable[InitialSize];
+		calendar = new Int2ObjectOpenHashMap<ArrayList<Steppable>>();
+		active = new AtomicInteger();
+		order = new Permutation();
 		stopped = true;
 	}
 	
 	/**
-	 * Get the count of nodes in the schedule.
+	 * Get the count of active steppables in the schedule.
 	 */
 	public int getCount() {
-		return schedule.size() + pending.size();
+		return active.get();
 	}
 	
 	/**
@@ -58,26 +104,103 @@ public class Schedule {
 		halt = true;
 		stopped = true;
 		
-		// Clear the arrays
-		schedule.clear();
-		pending.clear();
+		// Clear the arrays, note that the executor may still be running the current
+		// time step so the array is replaced instead of cleared
+		current = new Steppable[InitialSize];
+		next = new Steppable[InitialSize];
+		currentSize = 0;
+		nextSize = 0;
+		calendar = new Int2ObjectOpenHashMap<ArrayList<Steppable>>();
+		active.set(0);
 		
 		// Call the finish method
 		simulation.finish(halt);
 	}
 	
 	/**
-	 * Add a new steppable to the next time step.
+	 * Register an observer that is invoked on every time step that is a multiple 
+	 * of the cadence given, must not be called while the schedule is running.
+	 */
+	public void addObserver(StepObserver observer, int cadence) {
+		if (observer == null) {
+			throw new IllegalArgumentException("The observer cannot be null");
+		}
+		if (cadence < 1) {
+			throw new IllegalArgumentException("The cadence must be at least one time step");
+		}
+		observers = Arrays.copyOf(observers, observers.length + 1);
+		cadences = Arrays.copyOf(cadences, cadences.length + 1);
+		observers[observers.length - 1] = observer;
+		cadences[cadences.length - 1] = cadence;
+	}
+	
+	/**
+	 * Remove all of the observers, must not be called while the schedule is running.
+	 */
+	public void clearObservers() {
+		observers = new StepObserver[0];
+		cadences = new int[0];
+	}
+	
+	/**
+	 * Add a new steppable to the next time step, steppables that were removed may be 
+	 * added again once the schedule has dropped them.
 	 */
-	public void insert(Steppable steppable) {
-		pending.add(steppable);
+	public synchronized void insert(Steppable steppable) {
+		if (nextSize == next.length) {
+			next = Arrays.copyOf(next, next.length * GrowthRatio);
+		}
+		next[nextSize++] = steppable;
+		steppable.scheduled = true;
+		steppable.activate();
+		active.incrementAndGet();
+	}
+	
+	/**
+	 * Return a steppable that was removed to the schedule, it is run from the next
+	 * time step on. If the steppable was removed during the current time step it 
+	 * has not been dropped yet, so it is kept where it is instead of being added.
+	 */
+	public synchronized void reinsert(Steppable steppable) {
+		if (steppable.isActive()) {
+			return;
+		}
+		if (!steppable.scheduled) {
+			insert(steppable);
+		} else {
+			active.incrementAndGet();
+		}
+		steppable.activate();
+	}
+	
+	/**
+	 * Add a new steppable that is first run on the given time step, or the next
+	 * time step if the given one has already started.
+	 */
+	public synchronized void insert(Steppable steppable, int timeStep) {
+		if (timeStep <= upcoming) {
+			insert(steppable);
+			return;
+		}
+		ArrayList<Steppable> bucket = calendar.get(timeStep);
+		if (bucket == null) {
+			bucket = new ArrayList<Steppable>();
+			calendar.put(timeStep, bucket);
+		}
+		bucket.add(steppable);
+		steppable.scheduled = true;
+		steppable.activate();
+		active.incrementAndGet();
 	}
 		
 	/**
-	 * Remove the node indicated from the schedule.
+	 * Remove the node indicated from the schedule, it is dropped at the end of the time step.
 	 */
 	public void remove(Steppable steppable) {
-		steppable.deactivate();
+		if (steppable.isActive()) {
+			steppable.deactivate();
+			active.decrementAndGet();
+		}
 	}
 	
 	/**
@@ -92,7 +215,7 @@ public class Schedule {
 		}
 		
 		// Check for illegal states
-		if (schedule.size() > 0) {
+		if (currentSize > 0) {
 			throw new IllegalStateException("Schedule variable shoud be empty when starting the simulation!");
 		}
 		
@@ -103,38 +226,46 @@ public class Schedule {
 		timeStep = 0;
 		this.simulation = simulation;
 		
-		// Prepare the pending data by first shuffling it to remove any basis
-		shuffle(pending);
-		
-		// Update the schedule, clear pending
-		schedule.addAll(pending);
-		pending.clear();
+		// Prepare the inserted steppables
+		upcoming = timeStep;
+		advance(timeStep);
 		
 		// Run the schedule
-		while (getCount() != 0) {
-			// If the schedule is empty then the time step is complete
-			if (schedule.size() == 0) {
-				// Update the time step, inform the simulation, exit if we are done 
-				timeStep++;
-				simulation.step(timeStep, runTill);
-				if (timeStep == runTill || stopping) {
-					break;
+		while (true) {
+			// Run the time step in a new order, steppables inserted now are run in the next one
+			upcoming = timeStep + 1;
+			order.reset(currentSize, simulation.getRandom().nextLong());
+			int phases = simulation.getPhaseCount();
+			for (int ndx = 0; ndx < observers.length; ndx++) {
+				if (timeStep % cadences[ndx] == 0) {
+					observers[ndx].beforeStep(timeStep);
 				}
-				
-				// Shuffle and run
-				if (timeStep % ShuffleSteps == 0) {
-					shuffle(pending);
+			}
+			for (int phase = 0; phase < phases && !halt; phase++) {
+				executor.execute(current, order, timeStep, (phases == 1) ? Steppable.WholeStep : phase);
+			}
+			if (halt) {
+				break;
+			}
+			for (int ndx = 0; ndx < observers.length; ndx++) {
+				if (timeStep % cadences[ndx] == 0) {
+					observers[ndx].afterStep(timeStep);
 				}
-				schedule.addAll(pending);
-				pending.clear();				
+			}
+			if (active.get() == 0 && calendar.isEmpty()) {
+				break;
 			}
 			
-			// Otherwise, run the time step
-			Steppable steppable = schedule.remove();
-			if (steppable.isActive()) {
-				steppable.doAction(timeStep);
-				pending.add(steppable);
- 			}
+			// Update the time step, inform the simulation, exit if we are done 
+			timeStep++;
+			upcoming = timeStep;
+			simulation.step(timeStep, runTill);
+			if (timeStep == runTill || stopping) {
+				break;
+			}
+			
+			// Prepare the time step, including the steppables the simulation inserted
+			advance(timeStep);
 		}
 			
 		// Perform clean-up operations
@@ -145,20 +276,70 @@ public class Schedule {
 	}
 	
 	/**
-	 * Perform a Fisher–Yates shuffle on the steppables to remove possible bias
-	 * due to the activation order.
+	 * Prepare the next time step by compacting the current steppables in place, 
+	 * dropping those that are no longer active, and appending the inserted ones
+	 * along with those the calendar holds for the time step.
+	 */
+	private synchronized void advance(int upcoming) {
+		ArrayList<Steppable> bucket = calendar.remove(upcoming);
+		if (bucket != null) {
+			if (nextSize + bucket.size() > next.length) {
+				next = Arrays.copyOf(next, Math.max(nextSize + bucket.size(), next.length * GrowthRatio));
+			}
+			for (Steppable steppable : bucket) {
+				next[nextSize++] = steppable;
+			}
+		}
+		
+		int count = 0;
+		for (int ndx = 0; ndx < currentSize; ndx++) {
+			Steppable steppable = current[ndx];
+			if (steppable.isActive()) {
+				current[count++] = steppable;
+			} else {
+				steppable.scheduled = false;
+			}
+		}
+		Arrays.fill(current, count, currentSize, null);
+		
+		// Swap the arrays if nothing carried over, otherwise append the inserted steppables
+		if (count == 0) {
+			Steppable[] swap = current;
+			current = next;
+			next = swap;
+			currentSize = nextSize;
+		} else {
+			if (count + nextSize > current.length) {
+				current = Arrays.copyOf(current, Math.max(count + nextSize, current.length * GrowthRatio));
+			}
+			System.arraycopy(next, 0, current, count, nextSize);
+			Arrays.fill(next, 0, nextSize, null);
+			currentSize = count + nextSize;
+		}
+		nextSize = 0;
+	}
+
+	
+	/**
+	 * Set the executor that runs the steppables in each time step, must not be
+	 * called while the schedule is running.
+	 */
+	public void setExecutor(StepExecutor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * Set the order to run the steppables in, blocked orders only touch a small
+	 * region of memory at a time but correlate the positions of adjacent steppables. 
+	 * Must not be called while the schedule is running.
 	 */
-	private void shuffle(ArrayList<Steppable> steppables) {
-		for (int ndx = steppables.size() - 1; ndx > 0; ndx--) {
-	      int index = simulation.getRandom().nextInt(ndx + 1);
-	      Steppable swap = steppables.get(index);
-	      steppables.set(index, steppables.get(ndx));
-	      steppables.set(ndx, swap);
-	    }
+	public void setBlockedOrder(boolean blocked) {
+		order = new Permutation(blocked);
 	}
 	
 	/**
-	 * Signals the schedule to that it should stop at the end of the current time step.
+	 * Signals the schedule to that it should stop at the end of the current time 
+	 * step, may be called from any thread.
 	 */
 	public void stop() {
 		stopping = true;
@@ -0,0 +1,19 @@
+package edu.mtu.simulation.schedule;
+
+/**
+ * Runs the steppables that are due one at a time on the calling thread, in the
+ * order given.
+ */
+public class SequentialExecutor implements StepExecutor {
+
+	@Override
+	public void execute(Steppable[] steppables, Permutation order, int timeStep, int phase) {
+		int size = order.size();
+		for (int ndx = 0; ndx < size; ndx++) {
+			Steppable steppable = steppables[order.get(ndx)];
+			if (steppable.isActive() && steppable.isDue(timeStep)) {
+				steppable.doPhase(phase, timeStep);
+			}
+		}
+	}
+}
@@ -23,6 +23,13 @@ public interface Simulation {
 	 */
 	public void start(int timeSteps);
 	
+	/**
+	 * Get the number of phases each time step is run in, every steppable is run
+	 * for one phase before any is run for the next. When there is only one phase
+	 * the steppables run the whole time step at once.
+	 */
+	public int getPhaseCount();
+	
 	/**
 	 * Invoked when one time step has been completed.
 	 * 
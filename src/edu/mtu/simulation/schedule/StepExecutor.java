@@ -0,0 +1,18 @@
+package edu.mtu.simulation.schedule;
+
+/**
+ * Runs the steppables that are part of a single time step.
+ */
+public interface StepExecutor {
+
+	/**
+	 * Run the active steppables for the phase of the time step, the schedule drops
+	 * those that are no longer active once the time step is complete.
+	 * 
+	 * @param steppables The steppables in the time step, valid positions are [0, order.size()).
+	 * @param order The order to run the steppables in.
+	 * @param timeStep The current time step.
+	 * @param phase The phase of the time step, or Steppable.WholeStep.
+	 */
+	public void execute(Steppable[] steppables, Permutation order, int timeStep, int phase);
+}
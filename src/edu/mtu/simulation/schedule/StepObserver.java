@@ -0,0 +1,26 @@
+package edu.mtu.simulation.schedule;
+
+/**
+ * Observers are registered with the schedule to do work around the time steps
+ * without changing the simulation. Each observer is given a cadence and is only
+ * invoked on the time steps that are a multiple of it.
+ * 
+ * The callbacks are made on the thread running the schedule once per time step,
+ * so observers should avoid allocating if they are to be left on for long runs.
+ */
+public interface StepObserver {
+	
+	/**
+	 * Invoked before any steppable is run for the time step.
+	 * 
+	 * @param step The time step that is about to be run.
+	 */
+	public void beforeStep(int step);
+	
+	/**
+	 * Invoked once every steppable has been run for the time step.
+	 * 
+	 * @param step The time step that was run.
+	 */
+	public void afterStep(int step);
+}
@@ -5,15 +5,72 @@ package edu.mtu.simulation.schedule;
  */
 public abstract class Steppable {
 
+	// Phase given when the whole time step is run at once
+	public final static int WholeStep = -1;
+
 	private boolean active = true;
-	
+
+	// Set while the steppable is held by the schedule, maintained by the schedule
+	boolean scheduled = false;
+
+	// Number of time steps between visits, and the time step within the interval that is visited,
+	// these are short since there may be a great many steppables
+	private short interval = 1;
+	private short offset = 0;
+
 	public abstract void doAction(int step);
 
+	/**
+	 * Run the given phase of the time step, by default the whole action is run in the first phase.
+	 */
+	public void doPhase(int phase, int step) {
+		if (phase == WholeStep || phase == 0) {
+			doAction(step);
+		}
+	}
+
 	public boolean isActive() {
 		return active;
 	}
-	
+
 	public void deactivate() {
 		active = false;
 	}
+
+	void activate() {
+		active = true;
+	}
+	
+	/**
+	 * Check to see if the steppable is held by the schedule, a steppable that was removed
+	 * is held until the schedule drops it.
+	 */
+	public boolean isScheduled() {
+		return scheduled;
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Check to see if the steppable should be visited during the given time step.
+	 */
+	public boolean isDue(int step) {
+		return (interval == 1) || (step % interval == offset);
+	}
+
+	/**
+	 * Visit the steppable once every interval time steps, starting at the offset given.
+	 */
+	protected void setInterval(int interval, int offset) {
+		if (interval < 1 || interval > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("The interval must be between 1 and " + Short.MAX_VALUE + " time steps.");
+		}
+		if (offset < 0 || offset >= interval) {
+			throw new IllegalArgumentException("The offset must be within the interval.");
+		}
+		this.interval = (short)interval;
+		this.offset = (short)offset;
+	}
 }
@@ -3,13 +3,16 @@ package edu.mtu.simulation.tracking;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class provides counts the entities that are in the model based upon the 
- * count at model initialization and when they are added to the model.
+ * count at model initialization and when they are added to the model. The counts
+ * may be updated by multiple threads, but the entities are fixed once tracking 
+ * has started.
  */
-public class TrackEnties extends Tracker {
-	private Map<String, Long> counts;
+public class TrackEnties extends Tracker {
+	private Map<String, AtomicLong> counts;
 	
 	/**
 	 * Constructor, prepare the list of entities.
@@ -22,23 +25,21 @@ public class TrackEnties extends Tracker {
 	 * Get the count of molecules for the given formula.
 	 */
 	public long getCount(String formula) {
-		if (counts.containsKey(formula)) {
-			return counts.get(formula);
-		}
-		return 0;		
+		AtomicLong count = counts.get(formula);
+		return (count == null) ? 0 : count.get();		
 	}
 	
 	/**
 	 * Prepare to start tracking entities.
-	 */
+	 */
 	@Override
 	protected void prepare() {
 		super.prepare();
-				
+				
 		// Prepare the counts
-		counts = new HashMap<String, Long>();
+		counts = new HashMap<String, AtomicLong>();
 		for (String entity : entities) {
-			counts.put(entity, 0L);
+			counts.put(entity, new AtomicLong());
 		}
 	}
 	
@@ -49,7 +50,7 @@ public class TrackEnties extends Tracker {
 		try {
 			writer.write(timeStep);
 			for (String entity : entities) {
-				writer.write(counts.get(entity));
+				writer.write(counts.get(entity).get());
 			}
 			writer.newline();
 			if (flush) {
@@ -68,9 +69,9 @@ public class TrackEnties extends Tracker {
 	 * Update the total for the given entity by the given count. 
 	 */
 	public void update(String formula, long count) {
-		if (counts.containsKey(formula)) {
-			long value = counts.get(formula);
-			counts.put(formula, value + count);
+		AtomicLong value = counts.get(formula);
+		if (value != null) {
+			value.addAndGet(count);
 		}
 	}
 	
@@ -78,8 +79,9 @@ public class TrackEnties extends Tracker {
 	 * Zeros the count of the given entity.
 	 */
 	public void zero(String formula) {
-		if (counts.containsKey(formula)) {
-			counts.put(formula, 0l);
+		AtomicLong value = counts.get(formula);
+		if (value != null) {
+			value.set(0);
 		}
 	}
 }
@@ -0,0 +1,93 @@
+package edu.mtu.compound;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import org.apache.commons.math3.geometry.euclidean.threed.SphericalCoordinates;
+import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
+
+import edu.mtu.primitives.Entity;
+import edu.mtu.primitives.SimpleEntity;
+import edu.mtu.primitives.Sparse3DLattice;
+import edu.mtu.reactor.Reactor;
+import it.unimi.dsi.util.XoRoShiRo128PlusRandom;
+
+/**
+ * Benchmark comparing the random walk that cloned the location and converted
+ * the direction with commons-math against the walk that is computed with
+ * primitives and reuses a scratch location. The time and the bytes allocated
+ * by the thread for each move are reported, the allocations are measured
+ * using the ThreadMXBean.
+ *
+ * Usage: MoveBenchmark [entities] [moves]
+ */
+public class MoveBenchmark {
+
+	private final static double DeltaT = 1e-5;
+	private final static int[] tags = new int[] { 1 };
+
+	public static void main(String[] args) {
+		int entities = (args.length > 0) ? Double.valueOf(args[0]).intValue() : 100000;
+		int moves = (args.length > 1) ? Double.valueOf(args[1]).intValue() : 5000000;
+		int dimension = Reactor.calculateSize(null, entities);
+		int[] bounds = new int[] { dimension, dimension, dimension };
+		System.out.println("Entities: " + entities + ", Moves: " + moves + ", Dimension (nm): " + dimension);
+
+		// Populate the lattice
+		Random random = new Random(42);
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(entities, tags, 10);
+		Entity[] population = new Entity[entities];
+		for (int ndx = 0; ndx < entities; ndx++) {
+			population[ndx] = new SimpleEntity(tags[0]);
+			lattice.setObjectLocation(population[ndx], new int[] { random.nextInt(dimension), random.nextInt(dimension), random.nextInt(dimension) });
+		}
+
+		// Run each twice, the first pass allows the JIT to warm up
+		XoRoShiRo128PlusRandom walk = new XoRoShiRo128PlusRandom(42);
+		int[] scratch = new int[3];
+		for (int pass = 0; pass < 2; pass++) {
+			long bytes = allocated(), start = System.nanoTime();
+			for (int ndx = 0; ndx < moves; ndx++) {
+				before(lattice, population[ndx % entities], walk, bounds);
+			}
+			print("Before", System.nanoTime() - start, allocated() - bytes, moves);
+
+			bytes = allocated();
+			start = System.nanoTime();
+			for (int ndx = 0; ndx < moves; ndx++) {
+				Entity entity = population[ndx % entities];
+				int[] location = lattice.getObjectLocation(entity, scratch);
+				Molecule.walk(location, walk, DeltaT, 1, bounds);
+				lattice.setObjectLocation(entity, location);
+			}
+			print("After", System.nanoTime() - start, allocated() - bytes, moves);
+		}
+	}
+
+	/**
+	 * The random walk as it was, a copy of the location is moved by the vector.
+	 */
+	private static void before(Sparse3DLattice lattice, Entity entity, XoRoShiRo128PlusRandom random, int[] bounds) {
+		int[] location = lattice.getObjectLocation(entity).clone();
+		int speed = (int)Math.round((random.nextGaussian() * Molecule.SpeedStdDev + Molecule.SpeedMean) * 1e9);
+		double theta = -Math.PI + 2 * Math.PI * random.nextDoubleFast();
+		double phi = -Math.PI + 2 * Math.PI * random.nextDoubleFast();
+		Vector3D sphere = new SphericalCoordinates(speed, theta, phi).getCartesian();
+		location[0] = Math.max(0, Math.min(bounds[0], location[0] + (int)(DeltaT * sphere.getX())));
+		location[1] = Math.max(0, Math.min(bounds[1], location[1] + (int)(DeltaT * sphere.getY())));
+		location[2] = Math.max(0, Math.min(bounds[2], location[2] + (int)(DeltaT * sphere.getZ())));
+		lattice.setObjectLocation(entity, location);
+	}
+
+	/**
+	 * Get the number of bytes allocated by this thread so far.
+	 */
+	private static long allocated() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void print(String label, long total, long bytes, int moves) {
+		System.out.printf("%-8s %,.1f ns/move, %,.1f bytes/move\n", label, (double)total / moves, (double)bytes / moves);
+	}
+}
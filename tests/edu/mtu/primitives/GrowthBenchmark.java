@@ -0,0 +1,57 @@
+package edu.mtu.primitives;
+
+import java.util.Random;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Benchmark comparing the pauses caused by growing a map that rehashes all at
+ * once with the incrementally rehashed map used by the lattice. Both maps start
+ * small and are grown to the given number of entries, the total time and the
+ * longest single insert are reported.
+ *
+ * Usage: GrowthBenchmark [entries]
+ */
+public class GrowthBenchmark {
+
+	public static void main(String[] args) {
+		int entries = (args.length > 0) ? Double.valueOf(args[0]).intValue() : 10000000;
+		System.out.println("Entries: " + entries);
+
+		// Generate the keys once so both maps do the same work
+		Random random = new Random(42);
+		long[] keys = new long[entries];
+		for (int ndx = 0; ndx < entries; ndx++) {
+			keys[ndx] = Sparse3DLattice.packCoordinates(random.nextInt(1 << 20), random.nextInt(1 << 20), random.nextInt(1 << 20));
+		}
+		Object value = new Object();
+
+		// Run each twice, the first pass allows the JIT to warm up
+		for (int pass = 0; pass < 2; pass++) {
+			Long2ObjectOpenHashMap<Object> before = new Long2ObjectOpenHashMap<Object>(16);
+			long longest = 0, start = System.nanoTime();
+			for (int ndx = 0; ndx < entries; ndx++) {
+				long insert = System.nanoTime();
+				before.put(keys[ndx], value);
+				longest = Math.max(longest, System.nanoTime() - insert);
+			}
+			print("Before", System.nanoTime() - start, longest);
+			before = null;
+
+			IncrementalLong2ObjectMap<Object> after = new IncrementalLong2ObjectMap<Object>(16);
+			longest = 0;
+			start = System.nanoTime();
+			for (int ndx = 0; ndx < entries; ndx++) {
+				long insert = System.nanoTime();
+				after.put(keys[ndx], value);
+				longest = Math.max(longest, System.nanoTime() - insert);
+			}
+			print("After", System.nanoTime() - start, longest);
+			after = null;
+		}
+	}
+
+	private static void print(String label, long total, long longest) {
+		System.out.printf("%-8s total: %,.1f ms, longest insert: %,.3f ms\n", label, total / 1e6, longest / 1e6);
+	}
+}
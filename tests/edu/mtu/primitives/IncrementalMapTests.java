@@ -0,0 +1,48 @@
+package edu.mtu.primitives;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Tests to ensure that the incrementally rehashed map behaves like a regular
+ * map while it grows and shrinks.
+ */
+public class IncrementalMapTests {
+
+	private final static int operations = 200000;
+	private final static int keys = 20000;
+
+	/**
+	 * Ensure the long keyed map matches a regular map under random updates.
+	 */
+	@Test
+	public void long2ObjectTest() {
+		Random random = new Random(42);
+		IncrementalLong2ObjectMap<Integer> map = new IncrementalLong2ObjectMap<Integer>(1);
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		boolean grew = false;
+
+		for (int ndx = 0; ndx < operations; ndx++) {
+			// Spread the keys out so they are not sequential
+			long key = random.nextInt(keys) * 0x9E3779B97F4A7C15L;
+			if (random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				Assert.assertEquals(expected.put(key, ndx), map.put(key, ndx));
+			}
+			Assert.assertEquals(expected.get(key), map.get(key));
+			Assert.assertEquals(expected.size(), map.size());
+			grew |= map.isGrowing();
+		}
+		Assert.assertTrue(grew);
+
+		for (long key : expected.keySet()) {
+			Assert.assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
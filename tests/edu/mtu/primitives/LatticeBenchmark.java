@@ -0,0 +1,165 @@
+package edu.mtu.primitives;
+
+import java.util.Map;
+import java.util.Random;
+
+import edu.mtu.reactor.Reactor;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import sim.util.Bag;
+
+/**
+ * Benchmark comparing the hashed integer keys that were previously used by the
+ * lattice with the packed coordinate keys that are used now. Reports the bag
+ * size distribution and the move throughput for both.
+ *
+ * Usage: LatticeBenchmark [entities] [moves]
+ */
+public class LatticeBenchmark {
+
+	// Distance a molecule moves in one time step at dt = 1, nm
+	private final static int DISPLACEMENT = 590;
+
+	public static void main(String[] args) {
+		int entities = (args.length > 0) ? Double.valueOf(args[0]).intValue() : 1000000;
+		int moves = (args.length > 1) ? Double.valueOf(args[1]).intValue() : 5000000;
+
+		// Size the reactor the same way the simulation does
+		int dimension = Reactor.calculateSize(null, entities);
+		System.out.println("Entities: " + entities + ", Moves: " + moves + ", Dimension (nm): " + dimension);
+
+		// Note that the entities are boxed once up front so that only the keys differ
+		Random random = new Random(42);
+		Integer[] ids = new Integer[entities];
+		int[][] locations = new int[entities][];
+		for (int ndx = 0; ndx < entities; ndx++) {
+			ids[ndx] = ndx;
+			locations[ndx] = new int[] { random.nextInt(dimension), random.nextInt(dimension), random.nextInt(dimension) };
+		}
+
+		// Populate both maps
+		int allocation = entities * 2;
+		Int2ObjectOpenHashMap<Bag> hashed = new Int2ObjectOpenHashMap<Bag>(allocation);
+		Long2ObjectOpenHashMap<Bag> packed = new Long2ObjectOpenHashMap<Bag>(allocation);
+		Integer[] hashedKeys = new Integer[entities];
+		long[] packedKeys = new long[entities];
+		for (int ndx = 0; ndx < entities; ndx++) {
+			int[] location = locations[ndx];
+			hashedKeys[ndx] = hash(location, allocation);
+			packedKeys[ndx] = Sparse3DLattice.packCoordinates(location[0], location[1], location[2]);
+			add(hashed, hashedKeys[ndx], ids[ndx]);
+			add(packed, packedKeys[ndx], ids[ndx]);
+		}
+
+		System.out.println("\nBag sizes (before = hashed integer keys, after = packed long keys)");
+		report("Before", hashed);
+		report("After", packed);
+
+		// Generate the moves once so both approaches do the same work
+		int[] who = new int[moves];
+		int[][] where = new int[moves][];
+		for (int ndx = 0; ndx < moves; ndx++) {
+			who[ndx] = random.nextInt(entities);
+			where[ndx] = new int[] { random.nextInt(2 * DISPLACEMENT + 1) - DISPLACEMENT, random.nextInt(2 * DISPLACEMENT + 1) - DISPLACEMENT, random.nextInt(2 * DISPLACEMENT + 1) - DISPLACEMENT };
+		}
+
+		// Run each twice, the first pass allows the JIT to warm up
+		System.out.println("\nMove throughput");
+		for (int pass = 0; pass < 2; pass++) {
+			// Before, note that the key is boxed on every move
+			int[][] working = copy(locations);
+			long start = System.nanoTime();
+			for (int ndx = 0; ndx < moves; ndx++) {
+				int entity = who[ndx];
+				int[] location = move(working[entity], where[ndx], dimension);
+				hashed.get(hashedKeys[entity]).remove(ids[entity]);
+				Integer key = hash(location, allocation);
+				add(hashed, key, ids[entity]);
+				hashedKeys[entity] = key;
+			}
+			print("Before", moves, System.nanoTime() - start);
+	
+			// After
+			working = copy(locations);
+			start = System.nanoTime();
+			for (int ndx = 0; ndx < moves; ndx++) {
+				int entity = who[ndx];
+				int[] location = move(working[entity], where[ndx], dimension);
+				packed.get(packedKeys[entity]).remove(ids[entity]);
+				long key = Sparse3DLattice.packCoordinates(location[0], location[1], location[2]);
+				add(packed, key, ids[entity]);
+				packedKeys[entity] = key;
+			}
+			print("After", moves, System.nanoTime() - start);
+		}
+		
+		System.out.println("\nBag sizes after moving");
+		report("Before", hashed);
+		report("After", packed);
+	}
+	
+	private static int[][] copy(int[][] locations) {
+		int[][] copy = new int[locations.length][];
+		for (int ndx = 0; ndx < locations.length; ndx++) {
+			copy[ndx] = locations[ndx].clone();
+		}
+		return copy;
+	}
+
+	private static void add(Map<? super Integer, Bag> map, Integer key, Integer entity) {
+		Bag bag = map.get(key);
+		if (bag == null) {
+			bag = new Bag(8);
+			map.put(key, bag);
+		}
+		bag.add(entity);
+	}
+
+	private static void add(Long2ObjectOpenHashMap<Bag> map, long key, Integer entity) {
+		Bag bag = map.get(key);
+		if (bag == null) {
+			bag = new Bag(8);
+			map.put(key, bag);
+		}
+		bag.add(entity);
+	}
+
+	/**
+	 * The coordinate hash that was previously used by the lattice, Teschner et al., 2003
+	 */
+	private static Integer hash(int[] location, int allocation) {
+		final int p1 = 73856093, p2 = 19349663, p3 = 83492791;
+		return (location[0] * p1 ^ location[1] * p2 ^ location[2] * p3) % allocation;
+	}
+
+	private static int[] move(int[] location, int[] delta, int dimension) {
+		for (int ndx = 0; ndx < 3; ndx++) {
+			location[ndx] = Math.min(dimension, Math.max(0, location[ndx] + delta[ndx]));
+		}
+		return location;
+	}
+
+	private static void print(String label, int moves, long nanoseconds) {
+		System.out.printf("%-8s %,.0f moves/sec (%.1f ns/move)\n", label, moves / (nanoseconds / 1e9), (double)nanoseconds / moves);
+	}
+
+	/**
+	 * Print the distribution of the bag sizes.
+	 */
+	private static void report(String label, Map<?, Bag> map) {
+		long[] histogram = new long[5];
+		long total = 0, bags = 0, max = 0;
+		for (Bag bag : map.values()) {
+			int size = bag.numObjs;
+			if (size == 0) {
+				continue;
+			}
+			bags++;
+			total += size;
+			max = Math.max(max, size);
+			histogram[(size == 1) ? 0 : (size == 2) ? 1 : (size <= 4) ? 2 : (size <= 8) ? 3 : 4]++;
+		}
+		System.out.printf("%-8s bags: %,d, mean: %.3f, max: %d, [1]: %,d, [2]: %,d, [3-4]: %,d, [5-8]: %,d, [9+]: %,d\n",
+				label, bags, (double)total / bags, max, histogram[0], histogram[1], histogram[2], histogram[3], histogram[4]);
+	}
+}
@@ -0,0 +1,110 @@
+package edu.mtu.primitives;
+
+import java.util.Random;
+
+import edu.mtu.reactor.Reactor;
+
+/**
+ * Benchmark comparing the tag based search that scans every entity with the
+ * target tag against the spatial indices. The population is dominated by one
+ * tag with the rare tag being searched for, which is typical of the radical
+ * chemistry being modeled, and searches are made over a range of radii.
+ *
+ * Usage: SearchBenchmark [entities...], defaults to 1e5, 1e6, and 1e7
+ */
+public class SearchBenchmark {
+
+	// Mix of the tags, the last tag is the one searched for
+	private final static int[] tags = new int[] { 1, 2, 3 };
+	private final static double[] mix = new double[] { 0.89, 0.10, 0.01 };
+
+	// Search radii spanning the range seen in the reactions, nm
+	private final static int[] radii = new int[] { 3, 185, 705, 2000 };
+
+	private final static int QUERIES = 2000;
+
+	public static void main(String[] args) {
+		String[] counts = (args.length > 0) ? args : new String[] { "1e5", "1e6", "1e7" };
+		for (String value : counts) {
+			int entities = Double.valueOf(value).intValue();
+			int dimension = Reactor.calculateSize(null, entities);
+			System.out.println("\nEntities: " + entities + ", Dimension (nm): " + dimension);
+			System.out.printf("%-12s", "Radius");
+			for (int radius : radii) {
+				System.out.printf("%14d", radius);
+			}
+			System.out.println("   (us/query)");
+
+			// The tag scan does not depend upon the index
+			run(null, entities, dimension);
+			for (IndexType type : IndexType.values()) {
+				run(type, entities, dimension);
+			}
+		}
+	}
+
+	/**
+	 * Populate a lattice and time the searches, a null type is the tag scan.
+	 */
+	private static void run(IndexType type, int entities, int dimension) {
+		// Populate the lattice
+		Random random = new Random(42);
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(entities, tags, radii[2], (type == null) ? IndexType.CELL : type);
+		Entity[] population = new Entity[entities];
+		for (int ndx = 0; ndx < entities; ndx++) {
+			population[ndx] = new SimpleEntity(pick(random));
+			lattice.setObjectLocation(population[ndx], new int[] { random.nextInt(dimension), random.nextInt(dimension), random.nextInt(dimension) });
+		}
+
+		System.out.printf("%-12s", (type == null) ? "TAG SCAN" : type);
+		int target = tags[tags.length - 1];
+		for (int radius : radii) {
+			// Warm up, then time the queries
+			long elapsed = 0;
+			for (int pass = 0; pass < 2; pass++) {
+				long start = System.nanoTime();
+				for (int ndx = 0; ndx < QUERIES; ndx++) {
+					Entity entity = population[random.nextInt(entities)];
+					if (type == null) {
+						tagScan(lattice, population, entity, target, radius);
+					} else {
+						lattice.findFirstByTag(entity, target, radius);
+					}
+				}
+				elapsed = System.nanoTime() - start;
+			}
+			System.out.printf("%14.2f", elapsed / 1e3 / QUERIES);
+		}
+		
+		// Note how many of the cells were rejected by the species present
+		long hits = lattice.getPresenceHits(), misses = lattice.getPresenceMisses();
+		if (hits + misses > 0) {
+			System.out.printf("   %.1f%% of %,d cells rejected", (100.0 * misses) / (hits + misses), hits + misses);
+		}
+		System.out.println();
+	}
+
+	/**
+	 * Scan every entity for the first one with the tag in the radius.
+	 */
+	private static Entity tagScan(Sparse3DLattice lattice, Entity[] population, Entity entity, int tag, int radius) {
+		long limit = (long)radius * radius;
+		for (Entity checking : population) {
+			if (checking != entity && checking.getEntityTypeTag() == tag && lattice.getDistanceSquared(entity, checking) <= limit) {
+				return checking;
+			}
+		}
+		return null;
+	}
+
+	private static int pick(Random random) {
+		double value = random.nextDouble();
+		for (int ndx = 0; ndx < mix.length; ndx++) {
+			value -= mix[ndx];
+			if (value < 0) {
+				return tags[ndx];
+			}
+		}
+		return tags[tags.length - 1];
+	}
+}
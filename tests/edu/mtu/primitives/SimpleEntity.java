@@ -0,0 +1,29 @@
+package edu.mtu.primitives;
+
+/**
+ * Minimal entity for the lattice tests and benchmarks, it only has a tag and
+ * the id assigned by the lattice.
+ */
+public class SimpleEntity implements Entity {
+	private Integer tag;
+	private int id = -1;
+
+	public SimpleEntity(int tag) {
+		this.tag = tag;
+	}
+
+	@Override
+	public Integer getEntityTypeTag() {
+		return tag;
+	}
+
+	@Override
+	public int getAgentId() {
+		return id;
+	}
+
+	@Override
+	public void setAgentId(int id) {
+		this.id = id;
+	}
+}
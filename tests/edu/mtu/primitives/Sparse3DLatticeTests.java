@@ -0,0 +1,374 @@
+package edu.mtu.primitives;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Tests to ensure that the searches of the lattice return valid results.
+ */
+public class Sparse3DLatticeTests {
+
+	private final static int[] tags = new int[] { 1, 2, 3 };
+	private final static int dimension = 1000;
+	private final static int entities = 2000;
+	private final static int radius = 50;
+
+	/**
+	 * Ensure that the radius search finds an entity when one is in range, and
+	 * only returns entities that are in range.
+	 */
+	@Test
+	public void findFirstByTagTest() {
+		for (IndexType type : IndexType.values()) {
+			findFirstByTag(type, radius);
+		}
+	}
+	
+	/**
+	 * Ensure that the searches are still correct when the radius spans many cells.
+	 */
+	@Test
+	public void smallCellTest() {
+		for (IndexType type : IndexType.values()) {
+			findFirstByTag(type, 7);
+		}
+	}
+	
+	private void findFirstByTag(IndexType type, int cellSize) {
+		Random random = new Random(42);
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(entities, tags, cellSize, type);
+
+		List<Entity> population = new ArrayList<Entity>();
+		for (int ndx = 0; ndx < entities; ndx++) {
+			Entity entity = new SimpleEntity(tags[random.nextInt(tags.length)]);
+			lattice.setObjectLocation(entity, new int[] { random.nextInt(dimension), random.nextInt(dimension), random.nextInt(dimension) });
+			population.add(entity);
+		}
+
+		for (Entity entity : population) {
+			for (int tag : tags) {
+				Entity result = lattice.findFirstByTag(entity, tag, radius);
+				boolean expected = bruteForce(lattice, population, entity, tag, radius);
+				Assert.assertEquals(expected, result != null);
+				if (result != null) {
+					Assert.assertNotSame(entity, result);
+					Assert.assertEquals(tag, (int)result.getEntityTypeTag());
+					Assert.assertTrue(distance(lattice, entity, result) <= radius);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ensure that the searches are still correct after entities have moved, 
+	 * been removed, and been added.
+	 */
+	@Test
+	public void churnTest() {
+		for (IndexType type : IndexType.values()) {
+			churn(type);
+		}
+	}
+	
+	private void churn(IndexType type) {
+		Random random = new Random(42);
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(entities, tags, radius, type);
+
+		List<Entity> population = new ArrayList<Entity>();
+		for (int ndx = 0; ndx < entities; ndx++) {
+			Entity entity = new SimpleEntity(tags[random.nextInt(tags.length)]);
+			lattice.setObjectLocation(entity, new int[] { random.nextInt(dimension), random.nextInt(dimension), random.nextInt(dimension) });
+			population.add(entity);
+		}
+		
+		for (int ndx = 0; ndx < 5 * entities; ndx++) {
+			Entity entity = population.get(random.nextInt(population.size()));
+			switch (random.nextInt(4)) {
+			case 0:
+				// Remove and replace with a new entity
+				lattice.remove(entity);
+				population.remove(entity);
+				entity = new SimpleEntity(tags[random.nextInt(tags.length)]);
+				lattice.setObjectLocation(entity, new int[] { random.nextInt(dimension), random.nextInt(dimension), random.nextInt(dimension) });
+				population.add(entity);
+				break;
+			default:
+				// Move by a small amount, clamped to the lattice
+				int[] location = lattice.getObjectLocation(entity).clone();
+				for (int axis = 0; axis < 3; axis++) {
+					location[axis] = Math.min(dimension, Math.max(0, location[axis] + random.nextInt(2 * radius + 1) - radius));
+				}
+				lattice.setObjectLocation(entity, location);
+			}
+		}
+		
+		for (Entity entity : population) {
+			for (int tag : tags) {
+				boolean expected = bruteForce(lattice, population, entity, tag, radius);
+				Entity result = lattice.findFirstByTag(entity, tag, radius);
+				Assert.assertEquals(expected, result != null);
+				if (result != null) {
+					Assert.assertTrue(distance(lattice, entity, result) <= radius);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ensure that the stencil contains every point in the sphere sorted by distance.
+	 */
+	@Test
+	public void stencilTest() {
+		for (int radius : new int[] { 0, 1, 5, 12 }) {
+			SphereStencil stencil = new SphereStencil(radius);
+			int[] offsets = stencil.getOffsets();
+			Assert.assertEquals(offsets.length, stencil.size() * 3);
+			
+			int count = 0;
+			for (int x = -radius; x <= radius; x++) {
+				for (int y = -radius; y <= radius; y++) {
+					for (int z = -radius; z <= radius; z++) {
+						count += (x*x + y*y + z*z <= radius * radius) ? 1 : 0;
+					}
+				}
+			}
+			Assert.assertEquals(count, stencil.size());
+			
+			int previous = 0;
+			for (int ndx = 0; ndx < offsets.length; ndx += 3) {
+				int d = offsets[ndx] * offsets[ndx] + offsets[ndx + 1] * offsets[ndx + 1] + offsets[ndx + 2] * offsets[ndx + 2];
+				Assert.assertTrue(d >= previous && d <= radius * radius);
+				previous = d;
+			}
+		}
+	}
+	
+	/**
+	 * Ensure that the geometric search returns the closest entity, and that the
+	 * searches are still correct when the lattice is dense enough to use it, which
+	 * is the case for the small radius but not the large one.
+	 */
+	@Test
+	public void distanceBasedSearchTest() {
+		final int size = 12, small = 3, large = 10;
+		Random random = new Random(42);
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(entities, tags, large);
+		lattice.prepareStencils(new int[] { small, large });
+
+		List<Entity> population = new ArrayList<Entity>();
+		for (int ndx = 0; ndx < entities; ndx++) {
+			Entity entity = new SimpleEntity(tags[random.nextInt(tags.length)]);
+			lattice.setObjectLocation(entity, new int[] { random.nextInt(size), random.nextInt(size), random.nextInt(size) });
+			population.add(entity);
+		}
+		
+		SphereStencil stencil = new SphereStencil(large);
+		for (Entity entity : population) {
+			int[] location = lattice.getObjectLocation(entity);
+			for (int tag : tags) {
+				// Geometric search on its own
+				Entity result = lattice.distanceBasedSearch(entity, tag, stencil, location[0], location[1], location[2]);
+				Assert.assertEquals(bruteForce(lattice, population, entity, tag, large), result != null);
+				if (result != null) {
+					Assert.assertNotSame(entity, result);
+					Assert.assertEquals(closest(lattice, population, entity, tag), distance(lattice, entity, result), 0);
+				}
+				
+				// Both radii through the cost model
+				for (int radius : new int[] { small, large }) {
+					result = lattice.findFirstByTag(entity, tag, radius);
+					Assert.assertEquals(bruteForce(lattice, population, entity, tag, radius), result != null);
+					if (result != null) {
+						Assert.assertTrue(distance(lattice, entity, result) <= radius);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ensure that only entities at the exact same point are colocated.
+	 */
+	@Test
+	public void colocatedTest() {
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(1, tags, radius);
+		
+		Entity one = new SimpleEntity(1), two = new SimpleEntity(2), three = new SimpleEntity(3);
+		lattice.setObjectLocation(one, new int[] { 1, 2, 3 });
+		lattice.setObjectLocation(two, new int[] { 1, 2, 3 });
+		lattice.setObjectLocation(three, new int[] { 3, 2, 1 });
+		
+		Assert.assertEquals(2, lattice.getColocatedObjects(one).numObjs);
+		Assert.assertEquals(1, lattice.getObjectsAtLocation(new int[] { 3, 2, 1 }).numObjs);
+		Assert.assertNull(lattice.getObjectsAtLocation(new int[] { 2, 2, 2 }));
+	}
+
+	/**
+	 * Ensure that empty cells are evicted from the lattice and recycled.
+	 */
+	@Test
+	public void evictionTest() {
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(10, tags, radius);
+		
+		Entity one = new SimpleEntity(1), two = new SimpleEntity(2);
+		lattice.setObjectLocation(one, new int[] { 1, 1, 1 });
+		lattice.setObjectLocation(two, new int[] { 1, 1, 1 });
+		Assert.assertEquals(1, lattice.getCellCount());
+		Assert.assertEquals(1, lattice.getPoolMisses());
+		
+		// The cell is still occupied after the first move
+		lattice.setObjectLocation(one, new int[] { 2, 2, 2 });
+		Assert.assertEquals(2, lattice.getCellCount());
+		Assert.assertEquals(0, lattice.getPoolSize());
+		
+		// Now it is empty, so it should be evicted and then reused
+		lattice.remove(two);
+		Assert.assertEquals(1, lattice.getCellCount());
+		Assert.assertEquals(1, lattice.getPoolSize());
+		Assert.assertNull(lattice.getObjectsAtLocation(new int[] { 1, 1, 1 }));
+		
+		lattice.setObjectLocation(one, new int[] { 3, 3, 3 });
+		Assert.assertEquals(1, lattice.getCellCount());
+		Assert.assertEquals(1, lattice.getPoolHits());
+		Assert.assertEquals(1, lattice.getPoolSize());
+		Assert.assertEquals(1, lattice.getColocatedObjects(one).numObjs);
+		Assert.assertNull(lattice.findFirstByTag(one, 2, radius));
+	}
+
+	/**
+	 * Ensure that entities that move or are removed are tracked by the search.
+	 */
+	@Test
+	public void moveAndRemoveTest() {
+		for (IndexType type : IndexType.values()) {
+			moveAndRemove(type);
+		}
+	}
+	
+	private void moveAndRemove(IndexType type) {
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(10, tags, radius, type);
+
+		Entity one = new SimpleEntity(1), two = new SimpleEntity(2);
+		lattice.setObjectLocation(one, new int[] { 10, 10, 10 });
+		lattice.setObjectLocation(two, new int[] { 500, 500, 500 });
+		Assert.assertNull(lattice.findFirstByTag(one, 2, radius));
+
+		lattice.setObjectLocation(two, new int[] { 30, 30, 30 });
+		Assert.assertSame(two, lattice.findFirstByTag(one, 2, radius));
+
+		lattice.remove(two);
+		Assert.assertNull(lattice.findFirstByTag(one, 2, radius));
+	}
+
+	/**
+	 * Ensure that removed entities are not returned as the first entity of a tag.
+	 */
+	@Test
+	public void getFirstEntityTest() {
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(10, tags, radius);
+		Assert.assertNull(lattice.getFirstEntity(1));
+		
+		Entity one = new SimpleEntity(1), two = new SimpleEntity(1), three = new SimpleEntity(2);
+		lattice.setObjectLocation(one, new int[] { 1, 1, 1 });
+		lattice.setObjectLocation(two, new int[] { 2, 2, 2 });
+		lattice.setObjectLocation(three, new int[] { 3, 3, 3 });
+		
+		lattice.remove(one);
+		Assert.assertSame(two, lattice.getFirstEntity(1));
+		lattice.remove(two);
+		Assert.assertNull(lattice.getFirstEntity(1));
+		Assert.assertSame(three, lattice.getFirstEntity(2));
+	}
+
+	/**
+	 * Ensure that the ids of removed entities are reused, and that the locations
+	 * returned are copies that do not change as the entity moves.
+	 */
+	@Test
+	public void agentIdTest() {
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(1, tags, radius);
+		
+		Entity one = new SimpleEntity(1), two = new SimpleEntity(2), three = new SimpleEntity(3);
+		int[] location = new int[] { 1, 2, 3 };
+		lattice.setObjectLocation(one, location);
+		lattice.setObjectLocation(two, location);
+		Assert.assertEquals(0, one.getAgentId());
+		Assert.assertEquals(1, two.getAgentId());
+		
+		// The location given is copied, so changing it should not move the entity
+		location[0] = 10;
+		Assert.assertEquals(1, lattice.getObjectLocation(one)[0]);
+		int[] before = lattice.getObjectLocation(one);
+		lattice.setObjectLocation(one, location);
+		Assert.assertEquals(1, before[0]);
+		Assert.assertEquals(81, lattice.getDistanceSquared(one, two));
+		
+		// Removed entities give up their id to the next one added
+		Assert.assertEquals(3, lattice.remove(two)[2]);
+		Assert.assertEquals(-1, two.getAgentId());
+		Assert.assertNull(lattice.getObjectLocation(two));
+		lattice.setObjectLocation(three, new int[] { 10, 2, 3 });
+		Assert.assertEquals(1, three.getAgentId());
+		Assert.assertEquals(2, lattice.getAllObjects().size());
+		Assert.assertSame(three, lattice.findFirstByTag(one, 3, 0));
+		Assert.assertNull(lattice.findFirstByTag(one, 2, radius));
+	}
+
+	/**
+	 * Ensure that cells without the species are rejected and that the species 
+	 * present are updated as entities leave the cell.
+	 */
+	@Test
+	public void presenceTest() {
+		Sparse3DLattice lattice = Sparse3DLattice.create3DLattice(10, tags, radius);
+		
+		Entity one = new SimpleEntity(1), two = new SimpleEntity(2), three = new SimpleEntity(3);
+		lattice.setObjectLocation(one, new int[] { 10, 10, 10 });
+		lattice.setObjectLocation(two, new int[] { 20, 20, 20 });
+		lattice.setObjectLocation(three, new int[] { 500, 500, 500 });
+		
+		// The only cell in range only contains the wrong species
+		Assert.assertNull(lattice.findFirstByTag(two, 3, radius));
+		Assert.assertEquals(0, lattice.getPresenceHits());
+		Assert.assertEquals(1, lattice.getPresenceMisses());
+		
+		// Once the first entity leaves the cell it should no longer be present
+		Assert.assertSame(one, lattice.findFirstByTag(two, 1, radius));
+		lattice.setObjectLocation(one, new int[] { 400, 400, 400 });
+		lattice.setObjectLocation(three, new int[] { 30, 30, 30 });
+		Assert.assertNull(lattice.findFirstByTag(two, 1, radius));
+		Assert.assertSame(three, lattice.findFirstByTag(two, 3, radius));
+		Assert.assertEquals(2, lattice.getPresenceHits());
+		Assert.assertEquals(2, lattice.getPresenceMisses());
+	}
+
+	private static boolean bruteForce(Sparse3DLattice lattice, List<Entity> population, Entity entity, int tag, int radius) {
+		for (Entity check : population) {
+			if (check != entity && check.getEntityTypeTag() == tag && distance(lattice, entity, check) <= radius) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static double closest(Sparse3DLattice lattice, List<Entity> population, Entity entity, int tag) {
+		double closest = Double.MAX_VALUE;
+		for (Entity check : population) {
+			if (check != entity && check.getEntityTypeTag() == tag) {
+				closest = Math.min(closest, distance(lattice, entity, check));
+			}
+		}
+		return closest;
+	}
+
+	private static double distance(Sparse3DLattice lattice, Entity one, Entity two) {
+		int[] a = lattice.getObjectLocation(one), b = lattice.getObjectLocation(two);
+		long x = a[0] - b[0], y = a[1] - b[1], z = a[2] - b[2];
+		return Math.sqrt(x*x + y*y + z*z);
+	}
+}
@@ -7,11 +7,14 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 
+import edu.mtu.compound.Molecule;
+import edu.mtu.compound.Species;
 import junit.framework.Assert;
 
 public class ReactionRegistryTests {
 
 	private final static String reactionsFileName = "tests/reactions.csv";
+	private final static String disproportionationFileName = "tests/disproportionation.csv";
 	
 	private final static String[] expectedEntities = new String[] { "HO*", "*CH(OH)2", "*CH2COCH3",
 			"*CH2COCHO", "*CH2COOH", "*CH2OH", "*COOH",	"*COCOOH", "*CH(OH)COOH", "CH2CO", "H2O", 
@@ -34,4 +37,81 @@ public class ReactionRegistryTests {
 		}
 		Assert.assertEquals(0, entities.size());
 	}
+	
+	@Test
+	public void speciesTest() throws IOException {
+		ReactionRegistry instance = ReactionRegistry.getInstance();
+		for (String formula : expectedEntities) {
+			Species species = Species.get(formula);
+			Assert.assertSame(species, Species.get(species.getOrdinal()));
+			Assert.assertSame(formula, instance.getMoleculeDescription(formula), species.getDescription());
+		}
+		
+		// Species seen before the reactions are loaded are described once they are
+		instance.clear();
+		Assert.assertNull(Species.get("HO*").getDescription());
+		instance.load(reactionsFileName);
+		Assert.assertSame(instance.getMoleculeDescription("HO*"), Species.get("HO*").getDescription());
+	}
+	
+	@Test
+	public void assignRateClassesTest() {
+		ReactionRegistry instance = ReactionRegistry.getInstance();
+		int radius = instance.getMaxInteractionRadius();
+		instance.assignRateClasses(1, 2, 3);
+		
+		// Within an order of magnitude of the fastest reaction, or reacts on the first visit
+		for (String formula : new String[] { "CH3OH", "HO*", "HCOOH", "HCHO", "CH2CO" }) {
+			Assert.assertEquals(formula, 1, instance.getMoleculeDescription(formula).interval);
+		}
+		
+		// Within three orders of magnitude
+		for (String formula : new String[] { "CH3COCH3", "CH3COOH", "CH2(OH)2" }) {
+			Assert.assertEquals(formula, 2, instance.getMoleculeDescription(formula).interval);
+		}
+		
+		// Photolysis, slow reactions, or no reactions at all
+		for (String formula : new String[] { "H2O2", "H2O", "*CH2COCH3" }) {
+			Assert.assertEquals(formula, 3, instance.getMoleculeDescription(formula).interval);
+		}
+		Assert.assertEquals(3, instance.getMaxInterval());
+		
+		// The search radius covers the volume of the whole interval
+		MoleculeDescription md = instance.getMoleculeDescription("CH3COCH3");
+		Assert.assertEquals((int)Math.ceil(md.interactionRadius[0] * Math.cbrt(2)), md.searchRadius[0]);
+		Assert.assertTrue(instance.getMaxInteractionRadius() >= radius);
+	}
+	
+	@Test
+	public void getPathwaysTest() throws IOException {
+		ReactionRegistry instance = ReactionRegistry.getInstance();
+		instance.clear();
+		instance.load(disproportionationFileName);
+		
+		// The pathways are in the order they were loaded and are shared by the reactants
+		Molecule peroxyl = new Molecule("*OOCH2COCH3", false);
+		PathwayTable pathways = instance.getPathways(peroxyl, new Molecule("*OOCH2COCH3", false));
+		Assert.assertEquals("*OOCH2COCH3 + *OOCH2COCH3", pathways.getFormula());
+		Assert.assertEquals(3, pathways.size());
+		Assert.assertEquals(0.5, pathways.getReaction(2).getReactionRatio());
+		Assert.assertEquals(0x7L, pathways.getAll());
+		Assert.assertSame(pathways, instance.getPathways(peroxyl, peroxyl));
+		
+		// Unimolecular pathways
+		Molecule alkoxyl = new Molecule("*OCH2COCH3", false);
+		pathways = instance.getPathways(alkoxyl, null);
+		Assert.assertEquals("*OCH2COCH3", pathways.getFormula());
+		Assert.assertEquals(2, pathways.size());
+		
+		// Only the matched pathways remain open
+		List<BasicReaction> matched = new ArrayList<BasicReaction>();
+		matched.add(pathways.getReaction(1));
+		Assert.assertEquals(0x1L, pathways.getUnmatched(matched));
+		Assert.assertFalse(pathways.isConsumed(pathways.getUnmatched(matched)));
+		Assert.assertTrue(pathways.isConsumed(pathways.getAll()));
+		
+		// Reactants with a single reaction do not disproportionate
+		Assert.assertNull(instance.getPathways(peroxyl, new Molecule("HO2*", false)));
+		Assert.assertNull(instance.getPathways(new Molecule("CH3COCHO", false), new Molecule("HO*", false)));
+	}
 }
@@ -0,0 +1,129 @@
+package edu.mtu.simulation.schedule;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Tests to ensure that the permutations visit every index once and that the
+ * order is not biased, both over the whole range and in blocks.
+ */
+public class PermutationTests {
+
+	private final static int[] sizes = new int[] { 0, 1, 2, 3, 10, 255, 256, 257, 1000, 123457 };
+	private final static boolean[] modes = new boolean[] { false, true };
+
+	/**
+	 * Ensure that every index is returned exactly once.
+	 */
+	@Test
+	public void bijectionTest() {
+		Random random = new Random(42);
+		for (boolean blocked : modes) {
+			Permutation permutation = new Permutation(blocked);
+			for (int size : sizes) {
+				for (int trial = 0; trial < 5; trial++) {
+					permutation.reset(size, random.nextLong());
+					Assert.assertEquals(size, permutation.size());
+					boolean[] seen = new boolean[size];
+					for (int ndx = 0; ndx < size; ndx++) {
+						int index = permutation.get(ndx);
+						Assert.assertTrue(index >= 0 && index < size);
+						Assert.assertFalse(seen[index]);
+						seen[index] = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ensure that each index is equally likely to appear in each position.
+	 */
+	@Test
+	public void uniformityTest() {
+		final int size = 10, trials = 100000;
+		Random random = new Random(42);
+		for (boolean blocked : modes) {
+			Permutation permutation = new Permutation(blocked);
+			long[][] counts = new long[size][size];
+			for (int trial = 0; trial < trials; trial++) {
+				permutation.reset(size, random.nextLong());
+				for (int ndx = 0; ndx < size; ndx++) {
+					counts[ndx][permutation.get(ndx)]++;
+				}
+			}
+	
+			// Chi-squared test, 81 degrees of freedom has a critical value of 113.5 at p = 0.01
+			double expected = (double)trials / size, chi = 0;
+			for (int ndx = 0; ndx < size; ndx++) {
+				for (int index = 0; index < size; index++) {
+					chi += Math.pow(counts[ndx][index] - expected, 2) / expected;
+				}
+			}
+			Assert.assertTrue("Chi-squared of " + chi + " when blocked is " + blocked, chi < 113.5);
+		}
+	}
+	
+	/**
+	 * Ensure that any two indices are equally likely to be visited in either order,
+	 * regardless of whether they share a block.
+	 */
+	@Test
+	public void orderTest() {
+		final int size = 1000, trials = 20000;
+		final int[][] pairs = new int[][] { { 0, 1 }, { 0, 255 }, { 0, 256 }, { 998, 999 }, { 5, 999 } };
+		Random random = new Random(42);
+		for (boolean blocked : modes) {
+			Permutation permutation = new Permutation(blocked);
+			int[] positions = new int[size];
+			long[] before = new long[pairs.length];
+			for (int trial = 0; trial < trials; trial++) {
+				permutation.reset(size, random.nextLong());
+				for (int ndx = 0; ndx < size; ndx++) {
+					positions[permutation.get(ndx)] = ndx;
+				}
+				for (int ndx = 0; ndx < pairs.length; ndx++) {
+					if (positions[pairs[ndx][0]] < positions[pairs[ndx][1]]) {
+						before[ndx]++;
+					}
+				}
+			}
+			
+			// The standard deviation is about 0.0035, so this allows for more than five
+			for (int ndx = 0; ndx < pairs.length; ndx++) {
+				double ratio = (double)before[ndx] / trials;
+				Assert.assertTrue("Ratio of " + ratio + " for pair " + ndx + " when blocked is " + blocked, Math.abs(ratio - 0.5) < 0.02);
+			}
+		}
+	}
+	
+	/**
+	 * Ensure that the blocked order visits each block of adjacent indices together,
+	 * which is the locality it trades the correlation of the order for.
+	 */
+	@Test
+	public void blockedTest() {
+		final int size = 123457, block = 256;
+		Random random = new Random(42);
+		Permutation permutation = new Permutation(true);
+		Assert.assertTrue(permutation.isBlocked());
+		Assert.assertFalse(new Permutation().isBlocked());
+		permutation.reset(size, random.nextLong());
+		int[] positions = new int[size];
+		for (int ndx = 0; ndx < size; ndx++) {
+			positions[permutation.get(ndx)] = ndx;
+		}
+		
+		// Apart from the partial block, the positions of adjacent indices are never far apart
+		int far = 0;
+		for (int ndx = 1; ndx < size; ndx++) {
+			if (Math.abs(positions[ndx] - positions[ndx - 1]) >= 2 * block) {
+				far++;
+			}
+		}
+		Assert.assertTrue("Far apart " + far + " times", far < 2 * size / block);
+	}
+}
@@ -1,6 +1,7 @@
 package edu.mtu.simulation.schedule;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -25,11 +26,154 @@ public class ScheduleTests implements Simulation {
 		}
 	}
 	
+	private class BlockSteppable extends Steppable {
+		
+		private int block;
+		private int runs;
+		
+		public BlockSteppable(int block) {
+			this.block = block;
+		}
+		
+		@Override
+		public void doAction(int step) {
+			// No other phase should be running at the same time
+			int phase = block % phases;
+			Assert.assertEquals(0, running[1 - phase].get());
+			running[phase].incrementAndGet();
+			runs++;
+			running[phase].decrementAndGet();
+		}
+	}
+	
+	private class ExpiringSteppable extends Steppable {
+		
+		private int lifetime;
+		private int runs;
+		
+		public ExpiringSteppable(int lifetime) {
+			this.lifetime = lifetime;
+		}
+		
+		@Override
+		public void doAction(int step) {
+			runs++;
+			if (step == lifetime) {
+				schedule.remove(this);
+			}
+		}
+	}
+	
+	private class IntervalSteppable extends Steppable {
+		
+		private int runs;
+		
+		public IntervalSteppable(int interval, int offset) {
+			setInterval(interval, offset);
+		}
+		
+		@Override
+		public void doAction(int step) {
+			Assert.assertTrue(isDue(step));
+			runs++;
+		}
+	}
+	
+	private class CalendarSteppable extends Steppable {
+		
+		private int first = -1;
+		
+		@Override
+		public void doAction(int step) {
+			if (first == -1) {
+				first = step;
+			}
+			schedule.remove(this);
+		}
+	}
+	
+	private class ParkingSteppable extends Steppable {
+		
+		private int runs;
+		private Steppable parked;
+		
+		@Override
+		public void doAction(int step) {
+			runs++;
+			if (parked != null && step == 4) {
+				schedule.reinsert(parked);
+			} else if (parked == null && step == 2) {
+				schedule.remove(this);
+			}
+		}
+	}
+	
+	private class CountingObserver implements StepObserver {
+		
+		private int cadence;
+		private int before, after;
+		
+		public CountingObserver(int cadence) {
+			this.cadence = cadence;
+		}
+		
+		@Override
+		public void beforeStep(int step) {
+			Assert.assertEquals(0, step % cadence);
+			Assert.assertEquals(before, after);
+			before++;
+		}
+		
+		@Override
+		public void afterStep(int step) {
+			Assert.assertEquals(0, step % cadence);
+			Assert.assertEquals(before, after + 1);
+			after++;
+		}
+	}
+	
+	private class PhasedSteppable extends Steppable {
+		
+		private int last = -1;
+		
+		@Override
+		public void doAction(int step) {
+			Assert.fail("The whole time step should not be run at once.");
+		}
+		
+		@Override
+		public void doPhase(int phase, int step) {
+			Assert.assertEquals((last + 1) % stepPhases, phase);
+			last = phase;
+			
+			// Every steppable should have run the phase before, and none the one after it
+			int size = phasedSteppables.length;
+			if (phase == 0) {
+				Assert.assertEquals(step * size, completed[stepPhases - 1]);
+			} else {
+				Assert.assertEquals((step + 1) * size, completed[phase - 1]);
+			}
+			completed[phase]++;
+		}
+	}
+	
 	private final static int starting = 5;
+	private final static int blocks = 16;
+	private final static int phases = 2;
+	private final static AtomicInteger[] running = new AtomicInteger[] { new AtomicInteger(), new AtomicInteger() };
 	private final static int timeSteps = 10;
 	
 	private Schedule schedule;
 	
+	// Phases of each time step, and the number of times each was run
+	private int stepPhases = 1;
+	private int[] completed = new int[3];
+	private PhasedSteppable[] phasedSteppables = new PhasedSteppable[0];
+	
+	// Steppable to insert again once it has been dropped, and the time step to do so on
+	private Steppable recycled;
+	private int recycleOn = -1;
+	
 	/**
 	 * Not a unit test per se, but good enough to verify that the schedule is working correctly.
 	 */
@@ -43,6 +187,216 @@ public class ScheduleTests implements Simulation {
 		
 		// Run the schedule
 		schedule.start(this, timeSteps);
+		Assert.assertEquals(starting - 1, schedule.getCount());
+	}
+	
+	/**
+	 * Check that steppables are dropped once they are removed and the count is kept up to date.
+	 */
+	@Test
+	public void CompactionTest() {
+		schedule = new Schedule();
+		ExpiringSteppable[] steppables = new ExpiringSteppable[2000];
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			steppables[ndx] = new ExpiringSteppable(ndx % (2 * timeSteps));
+			schedule.insert(steppables[ndx]);
+		}
+		Assert.assertEquals(steppables.length, schedule.getCount());
+		schedule.start(this, timeSteps);
+		
+		// Those that outlive the run remain, the rest ran until they were removed
+		Assert.assertEquals(steppables.length / 2, schedule.getCount());
+		for (ExpiringSteppable steppable : steppables) {
+			Assert.assertEquals(Math.min(steppable.lifetime + 1, timeSteps), steppable.runs);
+		}
+	}
+	
+	/**
+	 * Check that steppables with an interval are only run on the time steps they are due.
+	 */
+	@Test
+	public void IntervalTest() {
+		schedule = new Schedule();
+		IntervalSteppable[] steppables = new IntervalSteppable[12];
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			int interval = ndx % 4 + 1;
+			steppables[ndx] = new IntervalSteppable(interval, ndx % interval);
+			schedule.insert(steppables[ndx]);
+		}
+		schedule.start(this, timeSteps);
+		
+		// Time steps [0, timeSteps) are run, count those that fall on the offset
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			int interval = ndx % 4 + 1, offset = ndx % interval;
+			int expected = (timeSteps - offset + interval - 1) / interval;
+			Assert.assertEquals(expected, steppables[ndx].runs);
+		}
+	}
+	
+	/**
+	 * Check that steppables held by the calendar are first run on the time step given.
+	 */
+	@Test
+	public void CalendarTest() {
+		schedule = new Schedule();
+		CalendarSteppable[] steppables = new CalendarSteppable[timeSteps - 2];
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			steppables[ndx] = new CalendarSteppable();
+			schedule.insert(steppables[ndx], ndx + 2);
+		}
+		
+		// Keep one steppable around so the schedule runs to the end
+		schedule.insert(new ExpiringSteppable(timeSteps));
+		Assert.assertEquals(steppables.length + 1, schedule.getCount());
+		schedule.start(this, timeSteps);
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			Assert.assertEquals(ndx + 2, steppables[ndx].first);
+		}
+		Assert.assertEquals(1, schedule.getCount());
+	}
+	
+	/**
+	 * Check that removed steppables are only run once per time step after they are reinserted.
+	 */
+	@Test
+	public void ReinsertTest() {
+		schedule = new Schedule();
+		
+		// Removed and reinserted before it is dropped, runs every time step
+		ParkingSteppable kept = new ParkingSteppable();
+		schedule.insert(kept);
+		schedule.remove(kept);
+		schedule.reinsert(kept);
+		
+		// Removed at step 2 and reinserted at step 4, so it misses steps 3 and 4
+		ParkingSteppable parked = new ParkingSteppable();
+		kept.parked = parked;
+		schedule.insert(parked);
+		
+		schedule.start(this, timeSteps);
+		Assert.assertEquals(timeSteps, kept.runs);
+		Assert.assertEquals(timeSteps - 2, parked.runs);
+		Assert.assertEquals(2, schedule.getCount());
+	}
+	
+	/**
+	 * Check that a removed steppable can be inserted again, as a new one, once it has been dropped.
+	 */
+	@Test
+	public void RecycleTest() {
+		schedule = new Schedule();
+		
+		// Removed at step 2, dropped at the end of it, and inserted again at step 5 to run from step 5
+		ExpiringSteppable steppable = new ExpiringSteppable(2);
+		schedule.insert(steppable);
+		recycled = steppable;
+		recycleOn = 5;
+		
+		// Keep one steppable around so the schedule runs to the end
+		schedule.insert(new ExpiringSteppable(timeSteps));
+		schedule.start(this, timeSteps);
+		Assert.assertTrue(steppable.isActive());
+		Assert.assertEquals(3 + (timeSteps - recycleOn), steppable.runs);
+		Assert.assertEquals(2, schedule.getCount());
+	}
+	
+	/**
+	 * Check that every steppable runs a phase of the time step before any runs the next one.
+	 */
+	@Test
+	public void PhasedTest() {
+		schedule = new Schedule();
+		stepPhases = 3;
+		phasedSteppables = new PhasedSteppable[100];
+		for (int ndx = 0; ndx < phasedSteppables.length; ndx++) {
+			phasedSteppables[ndx] = new PhasedSteppable();
+			schedule.insert(phasedSteppables[ndx]);
+		}
+		schedule.start(this, timeSteps);
+		for (int phase = 0; phase < stepPhases; phase++) {
+			Assert.assertEquals(timeSteps * phasedSteppables.length, completed[phase]);
+		}
+	}
+	
+	/**
+	 * Check that the phases of the checkerboard are run one at a time and that every steppable runs once per time step.
+	 */
+	@Test
+	public void CheckerboardTest() {
+		Decomposition decomposition = new Decomposition() {
+			@Override
+			public int getBlock(Steppable steppable) {
+				return ((BlockSteppable)steppable).block;
+			}
+
+			@Override
+			public int getBlockCount() {
+				return blocks;
+			}
+
+			@Override
+			public int getPhase(int block) {
+				return block % phases;
+			}
+
+			@Override
+			public int getPhaseCount() {
+				return phases;
+			}
+		};
+		CheckerboardExecutor executor = new CheckerboardExecutor(decomposition, 4);
+		
+		schedule = new Schedule();
+		schedule.setExecutor(executor);
+		BlockSteppable[] steppables = new BlockSteppable[blocks * 100];
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			steppables[ndx] = new BlockSteppable(ndx % blocks);
+			schedule.insert(steppables[ndx]);
+		}
+		schedule.start(this, timeSteps);
+		executor.shutdown();
+		
+		for (BlockSteppable steppable : steppables) {
+			Assert.assertEquals(timeSteps, steppable.runs);
+		}
+	}
+
+	/**
+	 * Check that the observers are only invoked on their cadence, before and after each time step.
+	 */
+	@Test
+	public void ObserverTest() {
+		schedule = new Schedule();
+		CountingObserver every = new CountingObserver(1);
+		CountingObserver third = new CountingObserver(3);
+		schedule.addObserver(every, 1);
+		schedule.addObserver(third, 3);
+		schedule.insert(new ExpiringSteppable(timeSteps));
+		schedule.start(this, timeSteps);
+		
+		// Time steps [0, timeSteps) are run
+		Assert.assertEquals(timeSteps, every.after);
+		Assert.assertEquals((timeSteps + 2) / 3, third.after);
+	}
+	
+	@Test
+	public void ForkJoinTest() {
+		ForkJoinExecutor executor = new ForkJoinExecutor(this, 4);
+		
+		// Enough steppables for several chunks, the last of which is partial
+		schedule = new Schedule();
+		schedule.setExecutor(executor);
+		IntervalSteppable[] steppables = new IntervalSteppable[3 * 4096 + 17];
+		for (int ndx = 0; ndx < steppables.length; ndx++) {
+			steppables[ndx] = new IntervalSteppable(1, 0);
+			schedule.insert(steppables[ndx]);
+		}
+		schedule.start(this, timeSteps);
+		executor.shutdown();
+		
+		for (IntervalSteppable steppable : steppables) {
+			Assert.assertEquals(timeSteps, steppable.runs);
+		}
 	}
 
 	@Override
@@ -52,7 +406,18 @@ public class ScheduleTests implements Simulation {
 	public void start(int timeSteps) { }
 	
 	@Override
-	public void step(int count, int total) { }
+	public int getPhaseCount() {
+		return stepPhases;
+	}
+	
+	@Override
+	public void step(int count, int total) {
+		if (count == recycleOn) {
+			Assert.assertFalse(recycled.isActive());
+			Assert.assertFalse(recycled.isScheduled());
+			schedule.insert(recycled);
+		}
+	}
 	
 	@Override
 	public void finish(boolean terminated) {